@@ -0,0 +1,15 @@
+package com.github.vchavezb.benchmarks;
+
+/**
+ * Kind of atoms in the body of a generated rule
+ */
+public enum AtomMix {
+    /** Class atoms only */
+    CLASSES,
+    /** Class atoms linked by object properties, each with a data property */
+    PROPERTIES,
+    /** Data properties restricted by numeric range builtins */
+    BUILTINS,
+    /** Classes, object and data properties, bound and unbound builtins */
+    MIXED
+}
@@ -0,0 +1,60 @@
+package com.github.vchavezb.benchmarks;
+
+import com.github.vchavezb.model.BuiltInAtomCustom;
+import com.github.vchavezb.model.ClassAtomCustom;
+import com.github.vchavezb.model.CustomSWRLAtom;
+import com.github.vchavezb.model.DataPropertyAtomCustom;
+import com.github.vchavezb.model.GraphListsForViz;
+import com.github.vchavezb.utilities.AOWLNEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of megaAlgorithmus with the number of builtins of a rule fragment.
+ * Each size doubles the number of builtins, with a linear grouping the time per builtin stays flat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class BuiltinGroupingBenchmark {
+
+    @Param({"1000", "2000", "4000", "8000", "16000"})
+    public int builtins;
+
+    private final AOWLNEngine engine = new AOWLNEngine();
+    private List<CustomSWRLAtom> atoms;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        atoms = new ArrayList<>();
+        atoms.add(new ClassAtomCustom("x", "Measurement\n(x)"));
+        for (int i = 0; i < builtins / 2; i++) {
+            atoms.add(new DataPropertyAtomCustom("x", "d" + i, "value" + i));
+        }
+        for (int i = 0; i < builtins; i++) {
+            // Numeric range checks: two bound builtins per data property
+            String label = i % 2 == 0 ? "swrlb:greaterThan" : "swrlb:lessThan";
+            BuiltInAtomCustom builtIn = new BuiltInAtomCustom("BI" + i, label, true, new String[]{"d" + i / 2});
+            builtIn.setLiterals(Collections.singletonList(Integer.toString(i)));
+            atoms.add(builtIn);
+        }
+        String[] columns = new String[builtins / 2];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = "d" + i;
+        }
+        atoms.add(new BuiltInAtomCustom("BI" + builtins, "sqwrl:select", false, columns));
+    }
+
+    @Benchmark
+    public GraphListsForViz megaAlgorithmus() {
+        // megaAlgorithmus does not modify the fragment
+        return engine.megaAlgorithmus(atoms);
+    }
+}
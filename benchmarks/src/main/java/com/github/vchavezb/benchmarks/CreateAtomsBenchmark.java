@@ -0,0 +1,29 @@
+package com.github.vchavezb.benchmarks;
+
+import com.github.vchavezb.model.CustomSWRLAtom;
+import com.github.vchavezb.utilities.AOWLNEngine;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.SWRLAtom;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the SWRL atoms of a rule body to the AOWLN atoms (labels and prefixes are resolved here)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class CreateAtomsBenchmark {
+
+    private final AOWLNEngine engine = new AOWLNEngine();
+
+    @Benchmark
+    public ArrayList<CustomSWRLAtom> createAtoms(RuleState state) {
+        return engine.createSWRLAtomsForTree(state.context, new LinkedHashSet<SWRLAtom>(state.rule.getBodyAtoms()));
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.vchavezb.benchmarks;
+
+import com.github.vchavezb.model.AOWLNEdgeElement;
+import com.github.vchavezb.model.AOWLNElement;
+import com.github.vchavezb.model.AOWLNElementTypeEnum;
+import com.github.vchavezb.model.CustomSWRLAtom;
+import com.github.vchavezb.model.GraphListsForViz;
+import com.github.vchavezb.model.NodeConnection;
+import com.github.vchavezb.model.NodeInfo;
+import com.github.vchavezb.utilities.AOWLNEngine;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.SWRLAtom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the AOWLN elements and edges to the node lists passed to graphviz.
+ * The elements and edges are those megaAlgorithmus creates for the body of the generated rule.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class GraphListsBenchmark {
+
+    private final AOWLNEngine engine = new AOWLNEngine();
+    private HashMap<String, AOWLNElement> elements;
+    private HashMap<String, AOWLNEdgeElement> edges;
+
+    @Setup(Level.Trial)
+    public void setUp(RuleState state) {
+        ArrayList<CustomSWRLAtom> bodyAtoms = engine.createSWRLAtomsForTree(state.context,
+                new LinkedHashSet<SWRLAtom>(state.rule.getBodyAtoms()));
+        GraphListsForViz graph = engine.megaAlgorithmus(state.context, bodyAtoms);
+        // Rebuild the maps megaAlgorithmus passes to createGraphListsForViz, in the same order
+        elements = new LinkedHashMap<>();
+        for (NodeInfo node : graph.getNodes()) {
+            elements.put(node.getInfo(), new AOWLNElement(AOWLNElementTypeEnum.valueOf(node.getType()),
+                    node.getInfo(), node.getCaption()));
+        }
+        edges = new LinkedHashMap<>();
+        NodeConnection[] connections = graph.getConnections();
+        for (int i = 0; i < connections.length; i++) {
+            NodeConnection connection = connections[i];
+            if (connection == null || connection.getParent() == null || connection.getChild() == null) {
+                continue;
+            }
+            edges.put("E" + i, new AOWLNEdgeElement(elements.get(connection.getParent().getInfo()),
+                    elements.get(connection.getChild().getInfo()), connection.getType(), connection.getLabel()));
+        }
+    }
+
+    @Benchmark
+    public GraphListsForViz createGraphLists() {
+        return engine.createGraphListsForViz(elements, edges);
+    }
+}
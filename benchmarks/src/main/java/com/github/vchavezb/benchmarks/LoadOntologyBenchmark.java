@@ -0,0 +1,68 @@
+package com.github.vchavezb.benchmarks;
+
+import aowln.SyntheticOntologyGenerator;
+import com.github.vchavezb.utilities.OWLUtil;
+import com.github.vchavezb.utilities.RenderContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parsing of a generated ontology with SWRL rules up to the render context
+ * (ontology, imports, prefixes, label index and rules)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class LoadOntologyBenchmark {
+
+    /** Number of rules of the ontology */
+    @Param({"100", "1000"})
+    public int rules;
+
+    @Param({"TURTLE", "RDF_XML"})
+    public SyntheticOntologyGenerator.Format format;
+
+    /** Depth of the import tree, with three imports per ontology */
+    @Param({"0", "3"})
+    public int importDepth;
+
+    private Path dir;
+    private Path ontology;
+    private ArrayList<String> imports;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(1);
+        generator.setRules(rules);
+        generator.setFormat(format);
+        generator.setImports(importDepth, 3);
+        dir = Files.createTempDirectory("aowln-benchmark-");
+        ontology = generator.generate(dir);
+        imports = new ArrayList<>();
+        imports.add(dir.resolve("imports").toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public RenderContext loadOntology() {
+        OWLUtil owlUtil = new OWLUtil();
+        owlUtil.loadOntology(ontology.toString(), imports);
+        return owlUtil.getRenderContext();
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.vchavezb.benchmarks;
+
+import com.github.vchavezb.model.CustomSWRLAtom;
+import com.github.vchavezb.model.GraphListsForViz;
+import com.github.vchavezb.model.RuleGraphs;
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.utilities.AOWLNEngine;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.SWRLAtom;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of the AOWLN graph of a rule body from its atoms, and of the graphs of the whole rule
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class MegaAlgorithmusBenchmark {
+
+    private final AOWLNEngine engine = new AOWLNEngine();
+    private final AOWLNServiceFacade facade = new AOWLNServiceFacade();
+    private ArrayList<CustomSWRLAtom> bodyAtoms;
+
+    @Setup(Level.Trial)
+    public void setUp(RuleState state) {
+        bodyAtoms = engine.createSWRLAtomsForTree(state.context, new LinkedHashSet<SWRLAtom>(state.rule.getBodyAtoms()));
+    }
+
+    @Benchmark
+    public GraphListsForViz megaAlgorithmus() {
+        // megaAlgorithmus does not modify the fragment
+        return engine.megaAlgorithmus(bodyAtoms);
+    }
+
+    @Benchmark
+    public RuleGraphs ruleGraphs(RuleState state) {
+        return facade.createRuleGraphs(state.context, state.rule);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.vchavezb.benchmarks;
+
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.model.RuleGraphs;
+import com.github.vchavezb.utilities.GraphVizGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layout of a rule body with graphviz and writing of the SVG image.
+ * The graphs are created once, so only the rendering is measured.
+ * Large rules take seconds to lay out, hence the smaller sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class ProduceImageBenchmark {
+
+    /** Number of body atoms of the rule */
+    @Param({"10", "50", "100"})
+    public int ruleSize;
+
+    @Param({"CLASSES", "PROPERTIES", "BUILTINS", "MIXED"})
+    public AtomMix atomMix;
+
+    private RuleGraphs graphs;
+    private File image;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        RuleState state = new RuleState();
+        state.ruleSize = ruleSize;
+        state.atomMix = atomMix;
+        state.setUp();
+        graphs = new AOWLNServiceFacade().createRuleGraphs(state.context, state.rule);
+        image = File.createTempFile("aowln-benchmark-", ".svg");
+        // Start the graphviz engine before the measurement
+        new GraphVizGenerator().produceImage(graphs.getBody(), image);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        image.delete();
+    }
+
+    @Benchmark
+    public boolean produceImage() {
+        // No render cache, every call lays out the graph
+        return new GraphVizGenerator().produceImage(graphs.getBody(), image);
+    }
+}
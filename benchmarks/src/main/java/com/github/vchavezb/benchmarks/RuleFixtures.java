@@ -0,0 +1,134 @@
+package com.github.vchavezb.benchmarks;
+
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.utilities.RenderContext;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generated ontologies with SWRL rules of a given size and atom mix
+ */
+final class RuleFixtures {
+
+    static final String NAMESPACE = "http://example.org/aowln/benchmark#";
+    private static final String SWRLB = "http://www.w3.org/2003/11/swrlb#";
+
+    private RuleFixtures() {}
+
+    /**
+     * Create an ontology with rules whose bodies have {@code ruleSize} atoms
+     * @param rules Number of rules
+     * @param ruleSize Number of body atoms per rule
+     * @param mix Kind of body atoms
+     * @return Ontology in a new manager
+     */
+    static OWLOntology createOntology(int rules, int ruleSize, AtomMix mix) {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        OWLOntology ontology;
+        try {
+            ontology = manager.createOntology(IRI.create(NAMESPACE.substring(0, NAMESPACE.length() - 1)));
+        } catch (OWLOntologyCreationException e) {
+            throw new IllegalStateException(e);
+        }
+        Set<OWLAxiom> axioms = new HashSet<>();
+        for (int r = 0; r < rules; r++) {
+            List<SWRLAtom> body = createBody(factory, ruleSize, mix);
+            SWRLAtom head = factory.getSWRLClassAtom(factory.getOWLClass(IRI.create(NAMESPACE + "Result")),
+                    variable(factory, "x0"));
+            OWLAnnotation label = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral("rule" + r));
+            SWRLRule rule = factory.getSWRLRule(new LinkedHashSet<>(body), Collections.singleton(head),
+                    Collections.singleton(label));
+            axioms.add(rule);
+            for (OWLEntity entity : rule.getSignature()) {
+                if (!entity.isBuiltIn() && !entity.getIRI().toString().startsWith(SWRLB)) {
+                    axioms.add(factory.getOWLDeclarationAxiom(entity));
+                }
+            }
+        }
+        manager.addAxioms(ontology, axioms);
+        return ontology;
+    }
+
+    private static List<SWRLAtom> createBody(OWLDataFactory factory, int ruleSize, AtomMix mix) {
+        List<SWRLAtom> body = new ArrayList<>();
+        if (mix == AtomMix.BUILTINS) {
+            body.add(classAtom(factory, 0));
+        }
+        for (int i = 0; body.size() < ruleSize; i++) {
+            switch (mix) {
+                case CLASSES:
+                    body.add(classAtom(factory, i));
+                    break;
+                case PROPERTIES:
+                    body.add(classAtom(factory, i));
+                    if (i > 0) {
+                        body.add(objectPropertyAtom(factory, i));
+                    }
+                    body.add(dataPropertyAtom(factory, i, i));
+                    break;
+                case BUILTINS:
+                    body.add(dataPropertyAtom(factory, 0, i));
+                    body.add(builtInAtom(factory, "greaterThan", variable(factory, "d" + i), literal(factory, i)));
+                    body.add(builtInAtom(factory, "lessThan", variable(factory, "d" + i), literal(factory, i + 10)));
+                    break;
+                case MIXED:
+                    body.add(classAtom(factory, i));
+                    if (i > 0) {
+                        body.add(objectPropertyAtom(factory, i));
+                    }
+                    body.add(dataPropertyAtom(factory, i, i));
+                    body.add(builtInAtom(factory, "greaterThan", variable(factory, "d" + i), literal(factory, i)));
+                    body.add(builtInAtom(factory, "add", variable(factory, "s" + i), variable(factory, "d" + i),
+                            literal(factory, 1)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown atom mix " + mix);
+            }
+        }
+        return body.subList(0, ruleSize);
+    }
+
+    private static SWRLVariable variable(OWLDataFactory factory, String name) {
+        return factory.getSWRLVariable(IRI.create(NAMESPACE + name));
+    }
+
+    private static SWRLLiteralArgument literal(OWLDataFactory factory, int value) {
+        return factory.getSWRLLiteralArgument(factory.getOWLLiteral(value));
+    }
+
+    private static SWRLAtom classAtom(OWLDataFactory factory, int i) {
+        return factory.getSWRLClassAtom(factory.getOWLClass(IRI.create(NAMESPACE + "Class" + i)),
+                variable(factory, "x" + i));
+    }
+
+    private static SWRLAtom objectPropertyAtom(OWLDataFactory factory, int i) {
+        return factory.getSWRLObjectPropertyAtom(factory.getOWLObjectProperty(IRI.create(NAMESPACE + "prop" + i)),
+                variable(factory, "x" + (i - 1)), variable(factory, "x" + i));
+    }
+
+    private static SWRLAtom dataPropertyAtom(OWLDataFactory factory, int subject, int i) {
+        return factory.getSWRLDataPropertyAtom(factory.getOWLDataProperty(IRI.create(NAMESPACE + "data" + i)),
+                variable(factory, "x" + subject), variable(factory, "d" + i));
+    }
+
+    private static SWRLAtom builtInAtom(OWLDataFactory factory, String name, SWRLDArgument... arguments) {
+        List<SWRLDArgument> argumentList = new ArrayList<>();
+        Collections.addAll(argumentList, arguments);
+        return factory.getSWRLBuiltInAtom(IRI.create(SWRLB + name), argumentList);
+    }
+
+    /**
+     * Create the render context of a generated ontology, the rules are parsed by the SWRLAPI
+     */
+    static RenderContext createContext(int rules, int ruleSize, AtomMix mix) {
+        return new AOWLNServiceFacade().createRenderContext(createOntology(rules, ruleSize, mix));
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.vchavezb.benchmarks;
+
+import com.github.vchavezb.utilities.RenderContext;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.swrlapi.core.SWRLAPIRule;
+
+/**
+ * Render context with a single generated rule, shared by the threads of a benchmark
+ */
+@State(Scope.Benchmark)
+public class RuleState {
+
+    /** Number of body atoms of the rule */
+    @Param({"10", "100", "1000"})
+    public int ruleSize;
+
+    @Param({"CLASSES", "PROPERTIES", "BUILTINS", "MIXED"})
+    public AtomMix atomMix;
+
+    RenderContext context;
+    SWRLAPIRule rule;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = RuleFixtures.createContext(1, ruleSize, atomMix);
+        rule = context.getRules().get(0);
+    }
+}
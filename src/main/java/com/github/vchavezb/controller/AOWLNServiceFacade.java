@@ -8,18 +8,32 @@ import org.slf4j.LoggerFactory;
 import org.swrlapi.core.SWRLAPIRule;
 import org.swrlapi.core.SWRLRuleRenderer;
 import com.github.vchavezb.utilities.AOWLNEngine;
+import com.github.vchavezb.utilities.DirectoryOutputSink;
 import com.github.vchavezb.utilities.GraphVizGenerator;
 import com.github.vchavezb.utilities.OWLUtil;
+import com.github.vchavezb.utilities.OntologyLabelIndex;
+import com.github.vchavezb.utilities.RenderCache;
+import com.github.vchavezb.utilities.RenderContext;
+import com.github.vchavezb.utilities.RenderMetrics;
+import com.github.vchavezb.utilities.RuleGraphEvent;
+import com.github.vchavezb.utilities.RuleOutputSink;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 
 public class AOWLNServiceFacade {
-    private OWLUtil owlUtil;
-    private AOWLNEngine aowlnEngine;
-    private ArrayList<SWRLAPIRule> allRules;
-    private SWRLRuleRenderer ruleRenderer;
+    private final AOWLNEngine aowlnEngine;
+    // Context of the last ontology loaded with getOntologyRules
+    private volatile RenderContext context;
+    private volatile RenderCache renderCache;
+    private volatile RenderMetrics metrics;
+    private volatile List<String> labelLanguages = OntologyLabelIndex.DEFAULT_LANGUAGES;
+    private volatile boolean parallelLabelIndex = false;
+    private volatile boolean useRuleEngine = false;
+    private volatile boolean deterministic = true;
+    private volatile File importIndexDirectory;
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final String engineFile = "aowln-image-engine.jar";
     private final String engineEnv = "AOWLN_ENGINE_PATH";
@@ -28,42 +42,146 @@ public class AOWLNServiceFacade {
     }
 
     public AOWLNServiceFacade() {
-        this.owlUtil = new OWLUtil();
         this.aowlnEngine = new AOWLNEngine();
     }
 
+    /**
+     * Set a cache for the rendered images. Rule fragments whose graph is already
+     * in the cache are copied instead of rendered.
+     * @param renderCache Render cache, null to disable caching
+     */
+    public void setRenderCache(RenderCache renderCache) {
+        this.renderCache = renderCache;
+    }
+
+    public RenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Record the time spent in each stage of loading and rendering
+     * @param metrics Metrics registry, null to disable the metrics
+     */
+    public void setMetrics(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Enable the deterministic rendering mode, identical rules produce byte-identical images.
+     * The mode is stored in the render contexts loaded afterwards, contexts that are already
+     * loaded keep their mode, see {@link RenderContext#withDeterministic(boolean)}.
+     * @param deterministic True to enable the deterministic mode (default)
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Set the language preference of the rdfs:labels shown for the rule predicates
+     * @param languages Preferred languages, "" for labels without language tag
+     */
+    public void setLabelLanguages(List<String> languages) {
+        this.labelLanguages = new ArrayList<>(languages);
+    }
+
+    /**
+     * Build the label index of the ontology and its imports in parallel
+     * @param parallel True to index the ontologies in parallel
+     */
+    public void setParallelLabelIndex(boolean parallel) {
+        this.parallelLabelIndex = parallel;
+    }
+
+    /**
+     * Load the rules with the SWRL rule engine (i.e., Drools) instead of
+     * reading them directly from the ontology
+     * @param useRuleEngine True to start the rule engine
+     */
+    public void setUseRuleEngine(boolean useRuleEngine) {
+        this.useRuleEngine = useRuleEngine;
+    }
+
+    /**
+     * Persist the ontologies found in the import directories, so later loads only
+     * scan the import files that were added or changed
+     * @param importIndexDirectory Directory of the import indexes, null to scan all files on every load
+     */
+    public void setImportIndexDirectory(File importIndexDirectory) {
+        this.importIndexDirectory = importIndexDirectory;
+    }
+
+    private OWLUtil createOWLUtil() {
+        OWLUtil owlUtil = new OWLUtil();
+        owlUtil.setLabelLanguages(labelLanguages);
+        owlUtil.setParallelLabelIndex(parallelLabelIndex);
+        owlUtil.setUseRuleEngine(useRuleEngine);
+        owlUtil.setMetrics(metrics);
+        owlUtil.setImportIndexDirectory(importIndexDirectory);
+        return owlUtil;
+    }
+
+    /**
+     * Load an ontology into a new render context. The facade is not modified,
+     * so contexts of different ontologies can be loaded and used concurrently.
+     * @param file String path to ontology
+     * @param imports Local directories to load imports from, may be null
+     * @return Render context of the ontology
+     */
+    public RenderContext loadRenderContext(String file, ArrayList<String> imports) {
+        OWLUtil owlUtil = createOWLUtil();
+        owlUtil.loadOntology(file, imports);
+        return owlUtil.getRenderContext().withDeterministic(deterministic);
+    }
+
+    /**
+     * Create a render context for an already loaded ontology
+     * @param ontology Ontology with SWRL rules
+     * @return Render context of the ontology
+     */
+    public RenderContext createRenderContext(OWLOntology ontology) {
+        OWLUtil owlUtil = createOWLUtil();
+        owlUtil.setOntology(ontology);
+        return owlUtil.getRenderContext().withDeterministic(deterministic);
+    }
+
+    /**
+     * @return Render context of the last ontology loaded with getOntologyRules, null if none
+     */
+    public RenderContext getRenderContext() {
+        return context;
+    }
+
+    private RenderContext requireContext() {
+        RenderContext current = context;
+        if (current == null) {
+            throw new IllegalStateException("No ontology loaded");
+        }
+        return current;
+    }
+
     /**
      * Load the ontology and obtain the list of SWRL Rules
      * @param file String path to ontology
      * @return
      */
     public ArrayList<SWRLAPIRule> getOntologyRules(String file,ArrayList<String> imports){
-        // Create a SWRL rule engine using the SWRLAPI
-        this.owlUtil.loadOntology(file, imports);
-        aowlnEngine.setOntology(this.owlUtil.getOntology());
-        aowlnEngine.setPrefixManager(this.owlUtil.getPrefixManager());
-        allRules = owlUtil.getAllRules();
-        this.ruleRenderer = owlUtil.getRuleRenderer();
-        ArrayList<String> SWRLRulesAsString = new ArrayList<>();
-        for (SWRLAPIRule swrlapiRule : allRules) {
-            SWRLRulesAsString.add(swrlapiRule.getRuleName() + ": " + ruleRenderer.renderSWRLRule(swrlapiRule));
-        }
-        return allRules;
+        context = loadRenderContext(file, imports);
+        return new ArrayList<>(context.getRules());
     }
 
     public ArrayList<SWRLAPIRule> getOntologyRules(OWLOntology ontology) {
-        owlUtil.setOntology(ontology);
-        allRules = owlUtil.getAllRules();
-        this.ruleRenderer = owlUtil.getRuleRenderer();
-        ArrayList<String> SWRLRulesAsString = new ArrayList<>();
-        for (SWRLAPIRule swrlapiRule : allRules) {
-            SWRLRulesAsString.add(swrlapiRule.getRuleName() + ": " + ruleRenderer.renderSWRLRule(swrlapiRule));
-        }
-        return allRules;
+        context = createRenderContext(ontology);
+        return new ArrayList<>(context.getRules());
     }
 
     /**
-     * Produce an image from an SWRLRule
+     * Produce an image from an SWRLRule.
+     * Once the ontology is loaded this method only reads shared state,
+     * so it can be called concurrently for different rules.
      * @param OutDir Directory output of the image
      * @param base_name Base name used for the rule. Two images will be generated with the format
      *                      base_name-head.png
@@ -72,10 +190,104 @@ public class AOWLNServiceFacade {
      * @return True if success
      */
     public boolean produceRuleImage(Path OutDir, String base_name, SWRLAPIRule swrlRule) {
-        HashSet<SWRLAtom> body = new HashSet<SWRLAtom>(swrlRule.getBody());
-        HashSet<SWRLAtom> head = new HashSet<SWRLAtom>(swrlRule.getHead());
-        ArrayList<CustomSWRLAtom> bodyTree = aowlnEngine.createSWRLAtomsForTree(body);
-        ArrayList<CustomSWRLAtom> headTree = aowlnEngine.createSWRLAtomsForTree(head);
+        return produceRuleImage(requireContext(), OutDir, base_name, swrlRule);
+    }
+
+    /**
+     * Produce an image from an SWRLRule of the ontology of a render context.
+     * Only reads the render context, so it can be called concurrently for any context.
+     * @param context Render context of the ontology of the rule
+     * @param OutDir Directory output of the image
+     * @param base_name Base name used for the rule
+     * @param swrlRule SWRL Api rule
+     * @return True if success
+     */
+    public boolean produceRuleImage(RenderContext context, Path OutDir, String base_name, SWRLAPIRule swrlRule) {
+        return produceRuleImage(context, new DirectoryOutputSink(OutDir), base_name, swrlRule);
+    }
+
+    /**
+     * Produce an image from an SWRLRule of the ontology of a render context into an output sink.
+     * Only reads the render context, so it can be called concurrently for any context
+     * and any thread safe sink.
+     * @param context Render context of the ontology of the rule
+     * @param sink Destination of the images, e.g. a directory or an archive
+     * @param base_name Base name used for the rule
+     * @param swrlRule SWRL Api rule
+     * @return True if success
+     */
+    public boolean produceRuleImage(RenderContext context, RuleOutputSink sink, String base_name, SWRLAPIRule swrlRule) {
+        RuleGraphs graphs = createRuleGraphs(context, swrlRule);
+        GraphVizGenerator graphVizGenerator = new GraphVizGenerator(renderCache, metrics);
+
+        String body_img = base_name + "-"+"body" + ".svg";
+        boolean res = graphVizGenerator.produceImage(graphs.getBody(), sink, body_img, swrlRule.getRuleName());
+        if (!res) {
+            return false;
+        }
+        logger.debug("Generated SWRL rule {} [Body] {}", swrlRule.getRuleName(), body_img);
+        String head_img = base_name + "-"+"head" + ".svg";
+        res = graphVizGenerator.produceImage(graphs.getHead(), sink, head_img, swrlRule.getRuleName());
+        if (!res) {
+            return false;
+        }
+        logger.debug("Generated SWRL rule {} [Head] {}", swrlRule.getRuleName(), head_img);
+        return true;
+    }
+
+    /**
+     * Render the body or the head of an SWRLRule into memory, nothing is written to disk.
+     * Only reads the render context, so it can be called concurrently for any context.
+     * @param context Render context of the ontology of the rule
+     * @param swrlRule SWRL Api rule
+     * @param part body or head
+     * @return Content of the SVG image
+     * @throws IOException If the rule could not be rendered
+     */
+    public byte[] renderRuleImage(RenderContext context, SWRLAPIRule swrlRule, String part) throws IOException {
+        return new GraphVizGenerator(renderCache, metrics).renderImage(ruleGraph(context, swrlRule, part),
+                swrlRule.getRuleName());
+    }
+
+    /**
+     * Render the body or the head of an SWRLRule into a stream, the stream is not closed
+     * @param context Render context of the ontology of the rule
+     * @param swrlRule SWRL Api rule
+     * @param part body or head
+     * @param out Stream the SVG image is written to
+     * @throws IOException If the rule could not be rendered or written
+     */
+    public void renderRuleImage(RenderContext context, SWRLAPIRule swrlRule, String part, OutputStream out) throws IOException {
+        new GraphVizGenerator(renderCache, metrics).renderImage(ruleGraph(context, swrlRule, part), out,
+                swrlRule.getRuleName());
+    }
+
+    private GraphListsForViz ruleGraph(RenderContext context, SWRLAPIRule swrlRule, String part) {
+        if (!part.equals("body") && !part.equals("head")) {
+            throw new IllegalArgumentException("Rule part must be body or head");
+        }
+        RuleGraphs graphs = createRuleGraphs(context, swrlRule);
+        return part.equals("body") ? graphs.getBody() : graphs.getHead();
+    }
+
+    /**
+     * Create the AOWLN graphs of the body and the head of a rule.
+     * Only reads the render context, so it can be called concurrently for any context.
+     * @param context Render context of the ontology of the rule
+     * @param swrlRule SWRL Api rule
+     * @return Graphs of the body and the head
+     */
+    public RuleGraphs createRuleGraphs(RenderContext context, SWRLAPIRule swrlRule) {
+        RenderMetrics metrics = this.metrics;
+        RuleGraphEvent event = new RuleGraphEvent();
+        event.begin();
+        long start = System.nanoTime();
+        // Keep the declaration order of the atoms for a stable rendering
+        HashSet<SWRLAtom> body = new LinkedHashSet<SWRLAtom>(swrlRule.getBodyAtoms());
+        HashSet<SWRLAtom> head = new LinkedHashSet<SWRLAtom>(swrlRule.getHeadAtoms());
+        ArrayList<CustomSWRLAtom> bodyTree = aowlnEngine.createSWRLAtomsForTree(context, body);
+        ArrayList<CustomSWRLAtom> headTree = aowlnEngine.createSWRLAtomsForTree(context, head);
+        start = RenderMetrics.record(metrics, RenderMetrics.Stage.CREATE_ATOMS, start);
 
         //Remove Dependency for AOWLN Convention: By creating necessary concepts
         List<ClassAtomCustom> bodyClasses = new ArrayList<>();
@@ -147,28 +359,29 @@ public class AOWLNServiceFacade {
             }
         }
 
-        GraphListsForViz vizListBody = aowlnEngine.megaAlgorithmus(bodyTree);
-        GraphListsForViz vizListHead = aowlnEngine.megaAlgorithmus(headTree);
-        GraphVizGenerator graphVizGenerator = new GraphVizGenerator();
-
-        File body_img = Paths.get(OutDir.toString(), base_name + "-"+"body" + ".svg").toFile();
-        boolean res = graphVizGenerator.produceImage(vizListBody, body_img);
-        if (!res) {
-            return false;
+        start = RenderMetrics.record(metrics, RenderMetrics.Stage.INJECT_CONCEPTS, start);
+        GraphListsForViz vizListBody = aowlnEngine.megaAlgorithmus(context, bodyTree);
+        GraphListsForViz vizListHead = aowlnEngine.megaAlgorithmus(context, headTree);
+        RenderMetrics.record(metrics, RenderMetrics.Stage.MEGA_ALGORITHMUS, start);
+        if (event.shouldCommit()) {
+            event.rule = swrlRule.getRuleName();
+            event.bodyAtoms = body.size();
+            event.headAtoms = head.size();
+            event.bodyNodes = vizListBody.getNodes().length;
+            event.bodyEdges = vizListBody.getEdgeCount();
+            event.headNodes = vizListHead.getNodes().length;
+            event.headEdges = vizListHead.getEdgeCount();
+            event.commit();
         }
-        logger.info("Generated SWRL Rule [Body]\nRule: " +
-                    swrlRule.getBody()+"\nPath: "+body_img);
-        File head_img = Paths.get(OutDir.toString(), base_name + "-"+"head" + ".svg").toFile();
-        res = graphVizGenerator.produceImage(vizListHead, head_img);
-        if (!res) {
-            return false;
-        }
-        logger.info("Generated SWRL Rule [Head]\nRule: " +
-                swrlRule.getHead()+"\nPath: "+head_img);
-        return true;
+        return new RuleGraphs(vizListBody, vizListHead);
     }
 
     public List<String> getRulesAsStrings(ArrayList<SWRLAPIRule> rules) {
+        return getRulesAsStrings(requireContext(), rules);
+    }
+
+    public List<String> getRulesAsStrings(RenderContext context, List<SWRLAPIRule> rules) {
+        SWRLRuleRenderer ruleRenderer = context.getRuleRenderer();
         ArrayList<String> SWRLRulesAsStrings = new ArrayList<>();
         for (SWRLAPIRule swrlapiRule : rules) {
             SWRLRulesAsStrings.add(swrlapiRule.getRuleName() + ": " + ruleRenderer.renderSWRLRule(swrlapiRule));
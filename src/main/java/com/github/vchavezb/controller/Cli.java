@@ -1,6 +1,14 @@
 package com.github.vchavezb.controller;
 
+import com.github.vchavezb.utilities.ArchiveOutputSink;
+import com.github.vchavezb.utilities.DirectoryOutputSink;
+import com.github.vchavezb.utilities.GraphVizEngineManager;
+import com.github.vchavezb.utilities.RenderCache;
+import com.github.vchavezb.utilities.RenderContext;
+import com.github.vchavezb.utilities.RenderMetrics;
+import com.github.vchavezb.utilities.RuleOutputSink;
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -9,16 +17,23 @@ import org.slf4j.LoggerFactory;
 import org.swrlapi.core.SWRLAPIRule;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
 
 public class Cli {
     public static void main(String[] args) throws IOException {
-        Logger logger = LoggerFactory.getLogger(Cli.class);
+        long startTime = System.nanoTime();
         ArgumentParser parser = ArgumentParsers.newFor("AOWLN Standalone").build()
                 .defaultHelp(true)
                 .description("Aided Owl Notation generation for SWRL");
         parser.addArgument("ontology").help("Ontology input file with swrl rules");
-        parser.addArgument("outputDir").help("Output directory for rules");
+        parser.addArgument("outputDir").help("Output directory for rules")
+                .nargs("?");
 
         parser.addArgument("-name","-n")
                 .help("Concatenate the rule name (i.e., rdfs:label)\n"+
@@ -29,8 +44,86 @@ public class Cli {
                 .help("Import a local directory to load imports from main ontology")
                 .type(String.class)
                 .nargs("*"); // Allow multiple occurrences of the option
+        parser.addArgument("-import-index")
+                .help("Directory of a persistent index of the ontologies found in the\n"+
+                        "import directories, only new or changed files are scanned again")
+                .type(String.class);
+        parser.addArgument("-threads", "-t")
+                .help("Number of rules rendered in parallel")
+                .type(Integer.class);
+        parser.addArgument("-engine-pool")
+                .help("Number of Graphviz render engines kept initialized\n"+
+                        "default [number of threads]")
+                .type(Integer.class);
+        parser.addArgument("-engine-warmup")
+                .help("Initialize all Graphviz render engines at startup")
+                .type(Boolean.class);
+        parser.addArgument("-cache")
+                .help("Directory of a persistent render cache, rules that did not\n"+
+                        "change since a previous run are copied from the cache")
+                .type(String.class);
+        parser.addArgument("-cache-size")
+                .help("Maximum size of the render cache in MB")
+                .type(Long.class);
+        parser.addArgument("-deterministic")
+                .help("Render identical rules as byte-identical images")
+                .type(Boolean.class);
+        parser.addArgument("-lang")
+                .help("Preferred languages of the rdfs:labels shown for the rule\n"+
+                        "predicates, labels without language tag are used next\n"+
+                        "default [en]")
+                .type(String.class)
+                .nargs("+");
+        parser.addArgument("-rule-engine")
+                .help("Load the rules with the SWRL rule engine (Drools)\n"+
+                        "instead of reading them from the ontology")
+                .type(Boolean.class);
+
+        parser.addArgument("-watch")
+                .help("Keep running and re-render the rules that changed\n"+
+                        "when the ontology or an import directory changes")
+                .type(Boolean.class);
+        parser.addArgument("-diff-against")
+                .help("Previous version of the ontology, only rules that were added or\n"+
+                        "modified since that version are rendered and a manifest.json\n"+
+                        "with the status of every rule is written to the output directory")
+                .type(String.class);
+        parser.addArgument("-archive")
+                .help("Write all images into a single archive file (.zip, .tar,\n"+
+                        ".tar.gz or .tgz) instead of the output directory")
+                .type(String.class);
+        parser.addArgument("-metrics-json")
+                .help("Write the time spent in each stage (percentiles) and\n"+
+                        "the slowest rules as JSON to the given file at the end of the run")
+                .type(String.class);
+        parser.addArgument("-quiet", "-q")
+                .help("Only log warnings and errors")
+                .action(Arguments.storeTrue());
+        parser.addArgument("-log-level")
+                .help("Log level, overrides -quiet\n"+
+                        "default [info]")
+                .choices("trace", "debug", "info", "warn", "error", "off");
+        parser.addArgument("-serve")
+                .help("Serve the rules as SVG images over HTTP on the given port\n"+
+                        "instead of writing them to the output directory")
+                .type(Integer.class);
+        parser.addArgument("-serve-host")
+                .help("Address the render server binds to")
+                .type(String.class);
+        parser.addArgument("-serve-ontology")
+                .help("Additional ontologies served by the render server")
+                .type(String.class)
+                .nargs("+");
 
         parser.setDefault("name",false);
+        parser.setDefault("threads",1);
+        parser.setDefault("engine_warmup",true);
+        parser.setDefault("cache_size",512L);
+        parser.setDefault("deterministic",true);
+        parser.setDefault("rule_engine",false);
+        parser.setDefault("serve_host","127.0.0.1");
+        parser.setDefault("watch",false);
+        parser.setDefault("quiet",false);
         Namespace ns = null;
         try {
             ns = parser.parseArgs(args);
@@ -38,32 +131,199 @@ public class Cli {
             parser.handleError(e);
             System.exit(1);
         }
+        // slf4j-simple reads the level when the first logger is created
+        String logLevel = ns.getString("log_level");
+        if (logLevel == null && ns.getBoolean("quiet")) {
+            logLevel = "warn";
+        }
+        if (logLevel != null) {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", logLevel);
+        }
+        Logger logger = LoggerFactory.getLogger(Cli.class);
+        int threads = ns.getInt("threads");
+        if (threads < 1) {
+            parser.handleError(new ArgumentParserException("-threads must be at least 1", parser));
+            System.exit(1);
+        }
+        Integer enginePool = ns.getInt("engine_pool");
+        if (enginePool != null && enginePool < 1) {
+            parser.handleError(new ArgumentParserException("-engine-pool must be at least 1", parser));
+            System.exit(1);
+        }
+        if (ns.getLong("cache_size") < 0) {
+            parser.handleError(new ArgumentParserException("-cache-size cannot be negative", parser));
+            System.exit(1);
+        }
+        Integer servePort = ns.getInt("serve");
+        String archivePath = ns.getString("archive");
+        if (archivePath != null && (servePort != null || ns.getBoolean("watch"))) {
+            parser.handleError(new ArgumentParserException("-archive cannot be combined with -serve or -watch", parser));
+            System.exit(1);
+        }
+        if (servePort != null && ns.getBoolean("watch")) {
+            parser.handleError(new ArgumentParserException("-serve cannot be combined with -watch", parser));
+            System.exit(1);
+        }
+        if (archivePath != null && !RuleOutputSink.isArchive(Paths.get(archivePath))) {
+            parser.handleError(new ArgumentParserException("-archive must end with .zip, .tar, .tar.gz or .tgz", parser));
+            System.exit(1);
+        }
+        if (servePort == null && archivePath == null && ns.get("outputDir") == null) {
+            parser.handleError(new ArgumentParserException("the following arguments are required: outputDir", parser));
+            System.exit(1);
+        }
+        if (servePort != null && (servePort < 0 || servePort > 65535)) {
+            parser.handleError(new ArgumentParserException("-serve must be a port number", parser));
+            System.exit(1);
+        }
         String ontologyPath = ns.get("ontology").toString();
-        String outputPath = ns.get("outputDir").toString();
 
         AOWLNServiceFacade facade;
         facade = new AOWLNServiceFacade();
-        logger.info("Loading ontology "+ ontologyPath);
+        facade.setDeterministic(ns.getBoolean("deterministic"));
+        List<String> languages = ns.getList("lang");
+        if (languages != null) {
+            languages = new ArrayList<>(languages);
+            if (!languages.contains("")) {
+                languages.add("");
+            }
+            facade.setLabelLanguages(languages);
+        }
+        facade.setParallelLabelIndex(threads > 1);
+        facade.setUseRuleEngine(ns.getBoolean("rule_engine"));
+        if (ns.get("import_index") != null) {
+            facade.setImportIndexDirectory(new File(ns.getString("import_index")));
+        }
+        RenderMetrics metrics = new RenderMetrics();
+        metrics.registerMBean();
+        facade.setMetrics(metrics);
+        String metricsJson = ns.getString("metrics_json");
+        RenderCache renderCache = null;
+        if (ns.get("cache") != null) {
+            renderCache = new RenderCache(Paths.get(ns.getString("cache")), ns.getLong("cache_size") * 1024 * 1024);
+            facade.setRenderCache(renderCache);
+        }
+        if (servePort != null) {
+            GraphVizEngineManager engineManager = GraphVizEngineManager.getInstance();
+            engineManager.setPoolSize(enginePool != null ? enginePool : threads);
+            engineManager.setWarmUp(ns.getBoolean("engine_warmup"));
+            RenderServer server = new RenderServer(facade,
+                    new InetSocketAddress(ns.getString("serve_host"), servePort), threads);
+            ArrayList<String> imports = ns.get("import");
+            server.addOntology(ontologyPath, imports);
+            List<String> extraOntologies = ns.getList("serve_ontology");
+            if (extraOntologies != null) {
+                for (String extraOntology : extraOntologies) {
+                    server.addOntology(extraOntology, imports);
+                }
+            }
+            engineManager.start();
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                engineManager.shutdown();
+                writeMetrics(metrics, metricsJson, logger);
+            }));
+            return;
+        }
+        logger.info("Loading ontology {}", ontologyPath);
         ArrayList<SWRLAPIRule> swrlRules = facade.getOntologyRules(ontologyPath, ns.get("import"));
-        File outDir = new File(outputPath);
-        if (!outDir.exists()) {
-            if (!outDir.mkdir()) {
-                logger.error("Could not create output directory");
+        File outDir = null;
+        RuleOutputSink sink;
+        if (archivePath != null) {
+            Path parent = Paths.get(archivePath).toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
             }
+            sink = RuleOutputSink.open(Paths.get(archivePath));
+            logger.info("Writing the images to the archive {}", archivePath);
+        } else {
+            outDir = new File(ns.get("outputDir").toString());
+            if (!outDir.exists()) {
+                if (!outDir.mkdir()) {
+                    logger.error("Could not create output directory");
+                }
+            }
+            sink = new DirectoryOutputSink(outDir.toPath());
         }
+        GraphVizEngineManager engineManager = GraphVizEngineManager.getInstance();
+        engineManager.setPoolSize(enginePool != null ? enginePool : threads);
+        engineManager.setWarmUp(ns.getBoolean("engine_warmup"));
+        engineManager.start();
         logger.info("Creating rules");
-        for (int rule_idx = 0; rule_idx < swrlRules.size(); rule_idx++) {
-            SWRLAPIRule rule = swrlRules.get(rule_idx);
-            String image_name = "rule_"+(rule_idx+1);
-            if (ns.getBoolean("name")) {
-                image_name = "rule_"+rule.getRuleName().replace(" ","_");
+        long renderStart = System.nanoTime();
+        int renderCount = swrlRules.size();
+        List<String> imageNames = RuleBatchRenderer.imageNames(swrlRules, ns.getBoolean("name"));
+        RuleBatchRenderer renderer = new RuleBatchRenderer(facade, threads);
+        List<RuleRenderFailure> failures;
+        // Rules whose images are written by this run, the watcher renders the others on its first update
+        List<String> renderedNames = imageNames;
+        List<SWRLAPIRule> renderedRules = swrlRules;
+        String oldOntologyPath = ns.getString("diff_against");
+        if (oldOntologyPath != null) {
+            logger.info("Loading previous ontology {}", oldOntologyPath);
+            RenderContext oldContext = facade.loadRenderContext(oldOntologyPath, ns.get("import"));
+            RuleDiff diff = RuleDiff.compare(facade, oldContext, facade.getRenderContext(), ns.getBoolean("name"));
+            logger.info("Rules since {}: {}", oldOntologyPath, diff);
+            List<String> renderNames = new ArrayList<>();
+            List<SWRLAPIRule> renderRules = new ArrayList<>();
+            for (RuleDiff.Entry entry : diff.getEntries()) {
+                if (entry.getStatus() == RuleDiff.Status.ADDED || entry.getStatus() == RuleDiff.Status.MODIFIED) {
+                    renderNames.add(entry.getNewImageName());
+                    renderRules.add(entry.getNewRule());
+                }
+            }
+            renderCount = renderRules.size();
+            renderedNames = renderNames;
+            renderedRules = renderRules;
+            failures = renderer.render(sink, renderNames, renderRules);
+            byte[] manifest = diff.toJson(oldOntologyPath, ontologyPath).getBytes(StandardCharsets.UTF_8);
+            if (sink instanceof ArchiveOutputSink) {
+                ((ArchiveOutputSink) sink).writeResource("manifest.json", manifest);
+            } else {
+                Files.write(outDir.toPath().resolve("manifest.json"), manifest);
+            }
+        } else {
+            failures = renderer.render(sink, imageNames, swrlRules);
+        }
+        sink.close();
+        long now = System.nanoTime();
+        logger.info("Rendered {} of {} rules with {} thread(s) in {} ms, {} ms in total, {} failed",
+                renderCount - failures.size(), renderCount, threads, (now - renderStart) / 1_000_000,
+                (now - startTime) / 1_000_000, failures.size());
+        logger.info("Time per stage:{}", metrics);
+        writeMetrics(metrics, metricsJson, logger);
+        if (renderCache != null) {
+            logger.info("Render cache: {} hits, {} misses, {} entries", renderCache.getHits(),
+                    renderCache.getMisses(), renderCache.getEntryCount());
+        }
+        if (!failures.isEmpty()) {
+            logger.error("{} of {} rules could not be generated", failures.size(), renderCount);
+            for (RuleRenderFailure failure : failures) {
+                logger.error(failure.toString());
             }
-            try {
-                boolean res = facade.produceRuleImage(outDir.toPath(), image_name, rule);
-            } catch (Exception e){
-                logger.error("Could not generate rule "+rule.getRuleName()+"\n"+e);
+            if (!ns.getBoolean("watch")) {
+                System.exit(1);
             }
         }
+        if (ns.getBoolean("watch")) {
+            OntologyWatcher watcher = new OntologyWatcher(facade, ontologyPath, ns.get("import"),
+                    outDir.toPath(), ns.getBoolean("name"), threads);
+            watcher.setRendered(renderedNames, renderedRules, failures);
+            watcher.watch();
+        }
+        engineManager.shutdown();
+        metrics.unregisterMBean();
+    }
 
+    private static void writeMetrics(RenderMetrics metrics, String file, Logger logger) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.write(Paths.get(file), metrics.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.error("Could not write the metrics to {}: {}", file, e.toString());
+        }
     }
-}
\ No newline at end of file
+}
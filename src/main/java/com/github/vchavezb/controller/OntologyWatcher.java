@@ -0,0 +1,322 @@
+package com.github.vchavezb.controller;
+
+import com.github.vchavezb.model.RuleGraphs;
+import com.github.vchavezb.utilities.RenderCache;
+import com.github.vchavezb.utilities.RenderContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swrlapi.core.SWRLAPIRule;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watch an ontology and its import directories and re-render only the rules that changed.
+ * After a change the ontology is reloaded and every output image name is compared with the
+ * previous load by the rule axiom (without annotations) and the graphs of its body and head,
+ * so changes of labels or prefixes shown in the images are detected too. Images of new or
+ * changed rules are rendered again and images of removed rules are deleted.
+ */
+public class OntologyWatcher {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final AOWLNServiceFacade facade;
+    private final Path ontologyFile;
+    private final ArrayList<String> imports;
+    private final Path outDir;
+    private final boolean useRuleName;
+    private final int threads;
+    private long debounceMillis = 500;
+    // Image name -> fingerprint of the rendered rule
+    private final Map<String, RuleFingerprint> rendered = new HashMap<>();
+
+    private static class RuleFingerprint {
+        final String axiom;
+        final String bodyKey;
+        final String headKey;
+
+        RuleFingerprint(String axiom, String bodyKey, String headKey) {
+            this.axiom = axiom;
+            this.bodyKey = bodyKey;
+            this.headKey = headKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RuleFingerprint that = (RuleFingerprint) o;
+            return axiom.equals(that.axiom) && bodyKey.equals(that.bodyKey) && headKey.equals(that.headKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(axiom, bodyKey, headKey);
+        }
+    }
+
+    /**
+     * Summary of an update
+     */
+    public static class UpdateResult {
+        final int added;
+        final int changed;
+        final int removed;
+        final int unchanged;
+        final List<RuleRenderFailure> failures;
+
+        UpdateResult(int added, int changed, int removed, int unchanged, List<RuleRenderFailure> failures) {
+            this.added = added;
+            this.changed = changed;
+            this.removed = removed;
+            this.unchanged = unchanged;
+            this.failures = failures;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public List<RuleRenderFailure> getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return added + " added, " + changed + " changed, " + removed + " removed, "
+                    + unchanged + " unchanged, " + failures.size() + " failed";
+        }
+    }
+
+    /**
+     * @param facade Facade used to load the ontology and render the rules
+     * @param ontologyPath Path to the ontology
+     * @param imports Local import directories, may be null
+     * @param outDir Output directory of the images
+     * @param useRuleName Name the images after the rule names instead of the rule numbers
+     * @param threads Number of rules rendered in parallel
+     */
+    public OntologyWatcher(AOWLNServiceFacade facade, String ontologyPath, ArrayList<String> imports,
+                           Path outDir, boolean useRuleName, int threads) {
+        this.facade = facade;
+        this.ontologyFile = Paths.get(ontologyPath).toAbsolutePath().normalize();
+        this.imports = imports;
+        this.outDir = outDir;
+        this.useRuleName = useRuleName;
+        this.threads = threads;
+    }
+
+    /**
+     * Time without further file events before an update starts, so a save
+     * that writes several events triggers a single update
+     * @param debounceMillis Quiet time in milliseconds
+     */
+    public void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Remember the rules of the loaded ontology that were already rendered
+     * @param imageNames Image names of the rendered rules
+     * @param rules Rendered rules, same order as {@code imageNames}
+     * @param failures Rules that could not be rendered, they are rendered again on the next update
+     */
+    public synchronized void setRendered(List<String> imageNames, List<SWRLAPIRule> rules, List<RuleRenderFailure> failures) {
+        RenderContext context = facade.getRenderContext();
+        rendered.clear();
+        for (int i = 0; i < rules.size(); i++) {
+            rendered.put(imageNames.get(i), fingerprint(context, rules.get(i)));
+        }
+        for (RuleRenderFailure failure : failures) {
+            rendered.remove(failure.getImageName());
+        }
+    }
+
+    private RuleFingerprint fingerprint(RenderContext context, SWRLAPIRule rule) {
+        RuleGraphs graphs = facade.createRuleGraphs(context, rule);
+        return new RuleFingerprint(RuleDiff.canonical(rule),
+                RenderCache.graphKey(graphs.getBody()), RenderCache.graphKey(graphs.getHead()));
+    }
+
+    /**
+     * Reload the ontology, render the added and changed rules and delete the images of removed rules
+     * @return Summary of the update
+     */
+    public synchronized UpdateResult update() {
+        List<SWRLAPIRule> rules = facade.getOntologyRules(ontologyFile.toString(), imports);
+        RenderContext context = facade.getRenderContext();
+        List<String> imageNames = RuleBatchRenderer.imageNames(rules, useRuleName);
+
+        Map<String, RuleFingerprint> current = new HashMap<>();
+        List<String> renderNames = new ArrayList<>();
+        List<SWRLAPIRule> renderRules = new ArrayList<>();
+        int added = 0;
+        int changed = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            String imageName = imageNames.get(i);
+            RuleFingerprint fingerprint = fingerprint(context, rules.get(i));
+            current.put(imageName, fingerprint);
+            RuleFingerprint previous = rendered.get(imageName);
+            if (fingerprint.equals(previous)) {
+                continue;
+            }
+            if (previous == null) {
+                added++;
+            } else {
+                changed++;
+            }
+            renderNames.add(imageName);
+            renderRules.add(rules.get(i));
+        }
+
+        int removed = 0;
+        for (String imageName : rendered.keySet()) {
+            if (!current.containsKey(imageName)) {
+                deleteImages(imageName);
+                removed++;
+            }
+        }
+
+        List<RuleRenderFailure> failures = new ArrayList<>();
+        if (!renderRules.isEmpty()) {
+            failures = new RuleBatchRenderer(facade, threads).render(outDir, renderNames, renderRules);
+        }
+        rendered.clear();
+        rendered.putAll(current);
+        for (RuleRenderFailure failure : failures) {
+            rendered.remove(failure.getImageName());
+        }
+        return new UpdateResult(added, changed, removed, rules.size() - added - changed, failures);
+    }
+
+    private void deleteImages(String imageName) {
+        for (String part : new String[]{"body", "head"}) {
+            Path image = outDir.resolve(imageName + "-" + part + ".svg");
+            try {
+                Files.deleteIfExists(image);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}: {}", image, e.toString());
+            }
+        }
+    }
+
+    /**
+     * Watch the ontology file and the import directories and update after every change.
+     * Blocks until the thread is interrupted.
+     * @throws IOException If the directories cannot be watched
+     */
+    public void watch() throws IOException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> keys = new HashMap<>();
+            Path ontologyDir = ontologyFile.getParent();
+            keys.put(register(watchService, ontologyDir), ontologyDir);
+            List<Path> importDirs = new ArrayList<>();
+            if (imports != null) {
+                for (String importDir : imports) {
+                    Path dir = Paths.get(importDir).toAbsolutePath().normalize();
+                    if (Files.isDirectory(dir)) {
+                        importDirs.add(dir);
+                        registerTree(watchService, dir, keys);
+                    }
+                }
+            }
+            logger.info("Watching {} and {} import directories", ontologyFile, importDirs.size());
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean relevant = processEvents(watchService, key, keys, importDirs);
+                // Wait until the files are quiet
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    relevant |= processEvents(watchService, key, keys, importDirs);
+                }
+                if (!relevant) {
+                    continue;
+                }
+                try {
+                    UpdateResult result = update();
+                    logger.info("Rules updated: {}", result);
+                    for (RuleRenderFailure failure : result.getFailures()) {
+                        logger.error(failure.toString());
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Could not reload {}: {}", ontologyFile, e.toString());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static WatchKey register(WatchService watchService, Path dir) throws IOException {
+        return dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    private static void registerTree(WatchService watchService, Path root, Map<WatchKey, Path> keys) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                keys.put(register(watchService, dir), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @return True if an event concerns the ontology or an import directory
+     */
+    private boolean processEvents(WatchService watchService, WatchKey key, Map<WatchKey, Path> keys,
+                                  List<Path> importDirs) throws IOException {
+        Path dir = keys.get(key);
+        boolean relevant = false;
+        if (dir != null) {
+            boolean inImports = importDirs.stream().anyMatch(dir::startsWith);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    relevant = true;
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (changed.equals(ontologyFile)) {
+                    relevant = true;
+                } else if (inImports) {
+                    relevant = true;
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        registerTree(watchService, changed, keys);
+                    }
+                }
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+        return relevant;
+    }
+}
@@ -0,0 +1,353 @@
+package com.github.vchavezb.controller;
+
+import com.github.vchavezb.utilities.JsonUtil;
+import com.github.vchavezb.utilities.RenderContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swrlapi.core.SWRLAPIRule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP server that renders the rules of already loaded ontologies on request.
+ * The ontologies are loaded once into render contexts, a reload replaces the context
+ * of an ontology while requests in progress finish with the previous one.
+ *
+ * Endpoints:
+ *  - GET  /ontologies                                   ontologies and their rules as JSON
+ *  - GET  /render?ontology=ID&amp;rule=NAME&amp;part=body|head  SVG image of a rule part,
+ *                                                       {@code index=N} (1-based) can be used instead of {@code rule}
+ *  - POST /reload[?ontology=ID]                         reload one or all ontologies from disk, the JSON
+ *                                                       response lists the reloaded and the failed ontologies
+ * The ontology parameter can be omitted when a single ontology is served.
+ */
+public class RenderServer {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final AOWLNServiceFacade facade;
+    private final InetSocketAddress address;
+    private final int threads;
+    // Ontology id -> served ontology, in the order they were added
+    private final Map<String, ServedOntology> ontologies = new LinkedHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private static class ServedOntology {
+        final String id;
+        final String file;
+        final ArrayList<String> imports;
+        volatile RenderContext context;
+
+        ServedOntology(String id, String file, ArrayList<String> imports, RenderContext context) {
+            this.id = id;
+            this.file = file;
+            this.imports = imports;
+            this.context = context;
+        }
+    }
+
+    /**
+     * @param facade Facade used to load ontologies and render rules
+     * @param address Address the server binds to
+     * @param threads Number of requests handled concurrently
+     */
+    public RenderServer(AOWLNServiceFacade facade, InetSocketAddress address, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        this.facade = facade;
+        this.address = address;
+        this.threads = threads;
+    }
+
+    /**
+     * Load an ontology and serve its rules
+     * @param file Path to the ontology
+     * @param imports Local directories to load imports from, may be null
+     * @return Id of the ontology used in the requests, the file name without extension
+     */
+    public String addOntology(String file, ArrayList<String> imports) {
+        RenderContext context = facade.loadRenderContext(file, imports);
+        String name = Paths.get(file).getFileName().toString();
+        int extension = name.lastIndexOf('.');
+        String baseId = extension > 0 ? name.substring(0, extension) : name;
+        synchronized (ontologies) {
+            String id = baseId;
+            for (int i = 2; ontologies.containsKey(id); i++) {
+                id = baseId + "-" + i;
+            }
+            ontologies.put(id, new ServedOntology(id, file, imports, context));
+            logger.info("Serving ontology {} as {} with {} rules", file, id, context.getRules().size());
+            return id;
+        }
+    }
+
+    /**
+     * Reload an ontology from disk. The previous context is kept if the ontology cannot be loaded.
+     * @param id Id of the ontology
+     * @throws IllegalArgumentException If the ontology is not served
+     */
+    public void reload(String id) {
+        ServedOntology served;
+        synchronized (ontologies) {
+            served = ontologies.get(id);
+        }
+        if (served == null) {
+            throw new IllegalArgumentException("Unknown ontology " + id);
+        }
+        RenderContext context = facade.loadRenderContext(served.file, served.imports);
+        served.context = context;
+        logger.info("Reloaded ontology {} with {} rules", id, context.getRules().size());
+    }
+
+    /**
+     * @return Ids of the served ontologies
+     */
+    public List<String> getOntologyIds() {
+        synchronized (ontologies) {
+            return new ArrayList<>(ontologies.keySet());
+        }
+    }
+
+    /**
+     * Start handling requests
+     * @throws IOException If the server cannot bind to its address
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext("/ontologies", exchange -> handle(exchange, "GET", this::handleOntologies));
+        server.createContext("/render", exchange -> handle(exchange, "GET", this::handleRender));
+        server.createContext("/reload", exchange -> handle(exchange, "POST", this::handleReload));
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Render server listening on http://{}:{}", address.getHostString(), getPort());
+    }
+
+    /**
+     * Stop handling requests
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @return Port the server listens on, -1 if not started
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    private static class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange, Map<String, String> query) throws IOException, HttpError;
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) {
+        try {
+            try {
+                if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    throw new HttpError(405, "Method not allowed, use " + method);
+                }
+                endpoint.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (HttpError e) {
+                sendText(exchange, e.status, e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Request {} failed: {}", exchange.getRequestURI(), e.toString());
+                sendText(exchange, 500, "Internal error: " + e);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not send response to {}: {}", exchange.getRemoteAddress(), e.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator >= 0 ? parameter.substring(0, separator) : parameter;
+            String value = separator >= 0 ? parameter.substring(separator + 1) : "";
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private ServedOntology findOntology(Map<String, String> query) throws HttpError {
+        String id = query.get("ontology");
+        synchronized (ontologies) {
+            if (id == null) {
+                if (ontologies.size() != 1) {
+                    throw new HttpError(400, "Missing parameter ontology");
+                }
+                return ontologies.values().iterator().next();
+            }
+            ServedOntology served = ontologies.get(id);
+            if (served == null) {
+                throw new HttpError(404, "Unknown ontology " + id);
+            }
+            return served;
+        }
+    }
+
+    private void handleOntologies(HttpExchange exchange, Map<String, String> query) throws IOException {
+        List<ServedOntology> served;
+        synchronized (ontologies) {
+            served = new ArrayList<>(ontologies.values());
+        }
+        StringBuilder json = new StringBuilder("{\"ontologies\":[");
+        for (int i = 0; i < served.size(); i++) {
+            ServedOntology ontology = served.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(JsonUtil.quote(ontology.id))
+                    .append(",\"file\":").append(JsonUtil.quote(ontology.file))
+                    .append(",\"rules\":[");
+            List<SWRLAPIRule> rules = ontology.context.getRules();
+            for (int r = 0; r < rules.size(); r++) {
+                if (r > 0) {
+                    json.append(',');
+                }
+                json.append(JsonUtil.quote(rules.get(r).getRuleName()));
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+        sendJson(exchange, json.toString());
+    }
+
+    private void handleRender(HttpExchange exchange, Map<String, String> query) throws IOException, HttpError {
+        RenderContext context = findOntology(query).context;
+        SWRLAPIRule rule = findRule(context, query);
+        String part = query.getOrDefault("part", "body");
+        if (!part.equals("body") && !part.equals("head")) {
+            throw new HttpError(400, "Parameter part must be body or head");
+        }
+        byte[] image;
+        try {
+            image = facade.renderRuleImage(context, rule, part);
+        } catch (IOException e) {
+            logger.error("Could not render rule {}: {}", rule.getRuleName(), e.toString());
+            throw new HttpError(500, "Could not render rule " + rule.getRuleName());
+        }
+        send(exchange, 200, "image/svg+xml", image);
+    }
+
+    private static SWRLAPIRule findRule(RenderContext context, Map<String, String> query) throws HttpError {
+        String ruleName = query.get("rule");
+        if (ruleName != null) {
+            SWRLAPIRule rule = context.getRule(ruleName);
+            if (rule == null) {
+                throw new HttpError(404, "Unknown rule " + ruleName);
+            }
+            return rule;
+        }
+        String index = query.get("index");
+        if (index == null) {
+            throw new HttpError(400, "Missing parameter rule or index");
+        }
+        int ruleIndex;
+        try {
+            ruleIndex = Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Parameter index must be a number");
+        }
+        List<SWRLAPIRule> rules = context.getRules();
+        if (ruleIndex < 1 || ruleIndex > rules.size()) {
+            throw new HttpError(404, "Rule index out of range 1.." + rules.size());
+        }
+        return rules.get(ruleIndex - 1);
+    }
+
+    private void handleReload(HttpExchange exchange, Map<String, String> query) throws IOException, HttpError {
+        List<String> ids;
+        if (query.containsKey("ontology")) {
+            ids = new ArrayList<>();
+            ids.add(findOntology(query).id);
+        } else {
+            ids = getOntologyIds();
+        }
+        // Every ontology is reloaded on its own, a failing one keeps its previous context
+        List<String> reloaded = new ArrayList<>();
+        StringBuilder failed = new StringBuilder();
+        for (String id : ids) {
+            try {
+                reload(id);
+                reloaded.add(id);
+            } catch (RuntimeException e) {
+                logger.error("Could not reload ontology {}: {}", id, e.toString());
+                if (failed.length() > 0) {
+                    failed.append(',');
+                }
+                failed.append("{\"id\":").append(JsonUtil.quote(id))
+                        .append(",\"error\":").append(JsonUtil.quote(e.toString())).append('}');
+            }
+        }
+        StringBuilder json = new StringBuilder("{\"reloaded\":[");
+        for (int i = 0; i < reloaded.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(JsonUtil.quote(reloaded.get(i)));
+        }
+        json.append("],\"failed\":[").append(failed).append("]}");
+        sendJson(exchange, reloaded.size() == ids.size() ? 200 : 500, json.toString());
+    }
+
+    private static void sendJson(HttpExchange exchange, String json) throws IOException {
+        sendJson(exchange, 200, json);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", (text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
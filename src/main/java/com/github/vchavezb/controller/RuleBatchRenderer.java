@@ -0,0 +1,148 @@
+package com.github.vchavezb.controller;
+
+import com.github.vchavezb.utilities.DirectoryOutputSink;
+import com.github.vchavezb.utilities.RenderContext;
+import com.github.vchavezb.utilities.RenderMetrics;
+import com.github.vchavezb.utilities.RuleOutputSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swrlapi.core.SWRLAPIRule;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Produce the images of a list of SWRL rules, optionally on a bounded pool of worker threads.
+ * Each rule is rendered independently through {@link AOWLNServiceFacade#produceRuleImage},
+ * so the output is the same as a sequential run. Failures are collected per rule
+ * and returned in rule order.
+ */
+public class RuleBatchRenderer {
+
+    private final AOWLNServiceFacade facade;
+    private final int threads;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * @param facade Facade with the ontology already loaded
+     * @param threads Number of worker threads, 1 renders on the calling thread
+     */
+    public RuleBatchRenderer(AOWLNServiceFacade facade, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        this.facade = facade;
+        this.threads = threads;
+    }
+
+    /**
+     * Base image names of the rules: rule_N numbered in rule order,
+     * or rule_NAME with the rule name (spaces replaced by _)
+     * @param rules SWRL rules
+     * @param useRuleName Name the images after the rule names
+     * @return Base image name of each rule, same order as {@code rules}
+     */
+    public static List<String> imageNames(List<SWRLAPIRule> rules, boolean useRuleName) {
+        List<String> imageNames = new ArrayList<>(rules.size());
+        for (int rule_idx = 0; rule_idx < rules.size(); rule_idx++) {
+            SWRLAPIRule rule = rules.get(rule_idx);
+            String image_name = "rule_"+(rule_idx+1);
+            if (useRuleName) {
+                image_name = "rule_"+rule.getRuleName().replace(" ","_");
+            }
+            imageNames.add(image_name);
+        }
+        return imageNames;
+    }
+
+    /**
+     * Render the rules into the output directory
+     * @param outDir Output directory of the images
+     * @param imageNames Base image name of each rule, same order as {@code rules}
+     * @param rules SWRL rules to render
+     * @return Failures in rule order, empty if all rules were rendered
+     */
+    public List<RuleRenderFailure> render(Path outDir, List<String> imageNames, List<SWRLAPIRule> rules) {
+        return render(new DirectoryOutputSink(outDir), imageNames, rules);
+    }
+
+    /**
+     * Render the rules into an output sink, each image is written as soon as its rule completes
+     * @param sink Destination of the images, e.g. a directory or an archive
+     * @param imageNames Base image name of each rule, same order as {@code rules}
+     * @param rules SWRL rules to render
+     * @return Failures in rule order, empty if all rules were rendered
+     */
+    public List<RuleRenderFailure> render(RuleOutputSink sink, List<String> imageNames, List<SWRLAPIRule> rules) {
+        if (imageNames.size() != rules.size()) {
+            throw new IllegalArgumentException("Expected one image name per rule");
+        }
+        RenderContext context = facade.getRenderContext();
+        if (context == null) {
+            throw new IllegalStateException("No ontology loaded");
+        }
+        List<RuleRenderFailure> failures = new ArrayList<>();
+        if (threads == 1) {
+            for (int i = 0; i < rules.size(); i++) {
+                RuleRenderFailure failure = renderRule(context, sink, imageNames.get(i), rules.get(i));
+                if (failure != null) {
+                    failures.add(failure);
+                }
+            }
+            return failures;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<RuleRenderFailure>> results = new ArrayList<>(rules.size());
+            for (int i = 0; i < rules.size(); i++) {
+                String imageName = imageNames.get(i);
+                SWRLAPIRule rule = rules.get(i);
+                results.add(executor.submit(() -> renderRule(context, sink, imageName, rule)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                RuleRenderFailure failure;
+                try {
+                    failure = results.get(i).get();
+                } catch (ExecutionException e) {
+                    failure = new RuleRenderFailure(rules.get(i).getRuleName(), imageNames.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = new RuleRenderFailure(rules.get(i).getRuleName(), imageNames.get(i), e);
+                }
+                if (failure != null) {
+                    failures.add(failure);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return failures;
+    }
+
+    private RuleRenderFailure renderRule(RenderContext context, RuleOutputSink sink, String imageName, SWRLAPIRule rule) {
+        RenderMetrics metrics = facade.getMetrics();
+        long start = System.nanoTime();
+        if (metrics != null) {
+            metrics.startRule();
+        }
+        RuleRenderFailure failure = null;
+        try {
+            if (!facade.produceRuleImage(context, sink, imageName, rule)) {
+                logger.error("Could not generate rule {}", rule.getRuleName());
+                failure = new RuleRenderFailure(rule.getRuleName(), imageName, null);
+            }
+        } catch (Exception e) {
+            logger.error("Could not generate rule {}", rule.getRuleName(), e);
+            failure = new RuleRenderFailure(rule.getRuleName(), imageName, e);
+        }
+        if (metrics != null) {
+            metrics.endRule(rule.getRuleName(), imageName, System.nanoTime() - start, failure == null);
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.vchavezb.controller;
+
+import com.github.vchavezb.model.RuleGraphs;
+import com.github.vchavezb.utilities.JsonUtil;
+import com.github.vchavezb.utilities.RenderCache;
+import com.github.vchavezb.utilities.RenderContext;
+import org.swrlapi.core.SWRLAPIRule;
+import org.swrlapi.core.SWRLRuleRenderer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rule level difference between two versions of an ontology.
+ * Rules are matched by their canonical axiom structure (the rule axiom without annotations),
+ * not by their position, so inserting a rule does not change the status of the other rules.
+ * A rule of the new version is
+ *  - unchanged: an old rule has the same structure and renders the same graphs
+ *  - modified: an old rule has the same structure but different graphs (e.g. a changed label),
+ *              or no old rule has the same structure but an unmatched old rule has the same name
+ *  - added: otherwise
+ * Old rules without a match are removed.
+ */
+public class RuleDiff {
+
+    public enum Status { UNCHANGED, ADDED, REMOVED, MODIFIED }
+
+    /**
+     * A rule of the old and/or the new version
+     */
+    public static class Entry {
+        final Status status;
+        final SWRLAPIRule oldRule;
+        final String oldImageName;
+        final SWRLAPIRule newRule;
+        final String newImageName;
+
+        Entry(Status status, SWRLAPIRule oldRule, String oldImageName, SWRLAPIRule newRule, String newImageName) {
+            this.status = status;
+            this.oldRule = oldRule;
+            this.oldImageName = oldImageName;
+            this.newRule = newRule;
+            this.newImageName = newImageName;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return Rule of the old version, null if added
+         */
+        public SWRLAPIRule getOldRule() {
+            return oldRule;
+        }
+
+        public String getOldImageName() {
+            return oldImageName;
+        }
+
+        /**
+         * @return Rule of the new version, null if removed
+         */
+        public SWRLAPIRule getNewRule() {
+            return newRule;
+        }
+
+        public String getNewImageName() {
+            return newImageName;
+        }
+    }
+
+    private final RenderContext oldContext;
+    private final RenderContext newContext;
+    private final List<Entry> entries;
+
+    private RuleDiff(RenderContext oldContext, RenderContext newContext, List<Entry> entries) {
+        this.oldContext = oldContext;
+        this.newContext = newContext;
+        this.entries = entries;
+    }
+
+    /**
+     * Compare the rules of two versions of an ontology
+     * @param facade Facade used to create the rule graphs
+     * @param oldContext Render context of the old version
+     * @param newContext Render context of the new version
+     * @param useRuleName Name the images after the rule names instead of the rule numbers
+     * @return Difference, entries of the new rules in rule order followed by the removed rules
+     */
+    public static RuleDiff compare(AOWLNServiceFacade facade, RenderContext oldContext, RenderContext newContext,
+                                   boolean useRuleName) {
+        List<SWRLAPIRule> oldRules = oldContext.getRules();
+        List<SWRLAPIRule> newRules = newContext.getRules();
+        List<String> oldImageNames = RuleBatchRenderer.imageNames(oldRules, useRuleName);
+        List<String> newImageNames = RuleBatchRenderer.imageNames(newRules, useRuleName);
+
+        // Canonical structure -> unmatched old rule indexes
+        Map<String, LinkedList<Integer>> oldByStructure = new HashMap<>();
+        for (int i = 0; i < oldRules.size(); i++) {
+            oldByStructure.computeIfAbsent(canonical(oldRules.get(i)), k -> new LinkedList<>()).add(i);
+        }
+        boolean[] oldMatched = new boolean[oldRules.size()];
+        Entry[] newEntries = new Entry[newRules.size()];
+        for (int i = 0; i < newRules.size(); i++) {
+            LinkedList<Integer> candidates = oldByStructure.get(canonical(newRules.get(i)));
+            if (candidates == null || candidates.isEmpty()) {
+                continue;
+            }
+            int oldIndex = candidates.removeFirst();
+            oldMatched[oldIndex] = true;
+            boolean sameGraphs = graphKey(facade, oldContext, oldRules.get(oldIndex))
+                    .equals(graphKey(facade, newContext, newRules.get(i)));
+            newEntries[i] = new Entry(sameGraphs ? Status.UNCHANGED : Status.MODIFIED,
+                    oldRules.get(oldIndex), oldImageNames.get(oldIndex), newRules.get(i), newImageNames.get(i));
+        }
+
+        // Rules whose structure changed are matched by name
+        Map<String, Integer> unmatchedOldByName = new LinkedHashMap<>();
+        for (int i = 0; i < oldRules.size(); i++) {
+            if (!oldMatched[i]) {
+                unmatchedOldByName.putIfAbsent(oldRules.get(i).getRuleName(), i);
+            }
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < newRules.size(); i++) {
+            if (newEntries[i] == null) {
+                Integer oldIndex = unmatchedOldByName.remove(newRules.get(i).getRuleName());
+                if (oldIndex != null) {
+                    oldMatched[oldIndex] = true;
+                    newEntries[i] = new Entry(Status.MODIFIED, oldRules.get(oldIndex), oldImageNames.get(oldIndex),
+                            newRules.get(i), newImageNames.get(i));
+                } else {
+                    newEntries[i] = new Entry(Status.ADDED, null, null, newRules.get(i), newImageNames.get(i));
+                }
+            }
+            entries.add(newEntries[i]);
+        }
+        for (int i = 0; i < oldRules.size(); i++) {
+            if (!oldMatched[i]) {
+                entries.add(new Entry(Status.REMOVED, oldRules.get(i), oldImageNames.get(i), null, null));
+            }
+        }
+        return new RuleDiff(oldContext, newContext, entries);
+    }
+
+    /**
+     * @return Canonical structure of a rule, independent of its annotations
+     */
+    static String canonical(SWRLAPIRule rule) {
+        // SWRLAPI builtin arguments are not equal between loads, compare the functional syntax instead
+        return rule.getAxiomWithoutAnnotations().toString();
+    }
+
+    private static String graphKey(AOWLNServiceFacade facade, RenderContext context, SWRLAPIRule rule) {
+        RuleGraphs graphs = facade.createRuleGraphs(context, rule);
+        return RenderCache.graphKey(graphs.getBody()) + RenderCache.graphKey(graphs.getHead());
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param status Status of the entries
+     * @return Entries with the given status
+     */
+    public List<Entry> getEntries(Status status) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.status == status) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Summary with the number of rules per status
+     */
+    @Override
+    public String toString() {
+        return getEntries(Status.UNCHANGED).size() + " unchanged, " + getEntries(Status.ADDED).size() + " added, "
+                + getEntries(Status.REMOVED).size() + " removed, " + getEntries(Status.MODIFIED).size() + " modified";
+    }
+
+    /**
+     * Write the difference as a JSON manifest with one list of rules per status
+     * @param oldOntology Path of the old version
+     * @param newOntology Path of the new version
+     * @return JSON document
+     */
+    public String toJson(String oldOntology, String newOntology) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"old\": ").append(JsonUtil.quote(oldOntology))
+                .append(",\n  \"new\": ").append(JsonUtil.quote(newOntology));
+        for (Status status : Status.values()) {
+            json.append(",\n  ").append(JsonUtil.quote(status.name().toLowerCase())).append(": [");
+            List<Entry> statusEntries = getEntries(status);
+            for (int i = 0; i < statusEntries.size(); i++) {
+                Entry entry = statusEntries.get(i);
+                json.append(i == 0 ? "\n" : ",\n").append("    {");
+                boolean first = true;
+                if (entry.newRule != null) {
+                    first = appendField(json, first, "name", entry.newRule.getRuleName());
+                    first = appendField(json, first, "image", entry.newImageName);
+                    first = appendField(json, first, "rule", render(newContext, entry.newRule));
+                }
+                if (entry.oldRule != null) {
+                    first = appendField(json, first, "oldName", entry.oldRule.getRuleName());
+                    first = appendField(json, first, "oldImage", entry.oldImageName);
+                    if (entry.status != Status.UNCHANGED) {
+                        appendField(json, first, "oldRule", render(oldContext, entry.oldRule));
+                    }
+                }
+                json.append("}");
+            }
+            json.append(statusEntries.isEmpty() ? "]" : "\n  ]");
+        }
+        json.append("\n}\n");
+        return json.toString();
+    }
+
+    private static boolean appendField(StringBuilder json, boolean first, String name, String value) {
+        if (!first) {
+            json.append(", ");
+        }
+        json.append(JsonUtil.quote(name)).append(": ").append(JsonUtil.quote(value));
+        return false;
+    }
+
+    private static String render(RenderContext context, SWRLAPIRule rule) {
+        SWRLRuleRenderer renderer = context.getRuleRenderer();
+        return renderer != null ? renderer.renderSWRLRule(rule) : rule.toString();
+    }
+}
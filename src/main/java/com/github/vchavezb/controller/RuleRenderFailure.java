@@ -0,0 +1,37 @@
+package com.github.vchavezb.controller;
+
+/**
+ * Failure while producing the images of a single SWRL rule.
+ * The cause is {@code null} when the rule could not be rendered
+ * but no exception was thrown (e.g. the image generator returned false).
+ */
+public class RuleRenderFailure {
+
+    private final String ruleName;
+    private final String imageName;
+    private final Throwable cause;
+
+    public RuleRenderFailure(String ruleName, String imageName, Throwable cause) {
+        this.ruleName = ruleName;
+        this.imageName = imageName;
+        this.cause = cause;
+    }
+
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    public String getImageName() {
+        return imageName;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        String reason = cause == null ? "image could not be generated" : cause.toString();
+        return imageName + " (" + ruleName + "): " + reason;
+    }
+}
@@ -23,7 +23,6 @@ public abstract class CustomSWRLAtom {
 
     @Override
     public String toString() {
-        System.out.println("label: " + label);
         return label;
     }
 
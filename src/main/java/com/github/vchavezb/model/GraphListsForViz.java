@@ -25,4 +25,17 @@ public class GraphListsForViz implements Serializable {
     public NodeInfo[] getNodes() {
         return nodes;
     }
+
+    /**
+     * @return Number of edges, connections without endpoints are null and not counted
+     */
+    public int getEdgeCount() {
+        int edges = 0;
+        for (NodeConnection connection : connections) {
+            if (connection != null) {
+                edges++;
+            }
+        }
+        return edges;
+    }
 }
@@ -0,0 +1,23 @@
+package com.github.vchavezb.model;
+
+/**
+ * Graphs of the body and the head of a SWRL rule
+ */
+public class RuleGraphs {
+
+    GraphListsForViz body;
+    GraphListsForViz head;
+
+    public RuleGraphs(GraphListsForViz body, GraphListsForViz head) {
+        this.body = body;
+        this.head = head;
+    }
+
+    public GraphListsForViz getBody() {
+        return body;
+    }
+
+    public GraphListsForViz getHead() {
+        return head;
+    }
+}
@@ -9,33 +9,78 @@
     
     import java.rmi.server.UID;
     import java.util.*;
-    import java.util.regex.Matcher;
-    import java.util.regex.Pattern;
 
     import java.util.stream.Collectors;
 
-    import org.semanticweb.owlapi.search.EntitySearcher;
-    import java.util.function.Predicate;
-
-    import static com.github.vchavezb.utilities.OWLUtil.getLabelAnnotation;
-
     /**
      * Created by Thomas Farrenkopf on 07.06.2017.
      */
     public class AOWLNEngine {
-        private final String SWRLX_IRI = "http://swrl.stanford.edu/ontologies/built-ins/3.3/swrlx.owl#";
-        private final String SQWRL_IRI = "http://sqwrl.stanford.edu/ontologies/built-ins/3.4/sqwrl.owl#";
-        private final String SWRLB_IRI = "http://www.w3.org/2003/11/swrlb#";
-        private final String SWRL_IRI = "http://www.w3.org/2003/11/swrl#";
-        private final Pattern SWRL_IRI_PATTERN = Pattern.compile("<(.*?)>");
-        private final Pattern DATA_PROPERTY_VALUE_PATTERN = Pattern.compile("\"([^\"]*)\"(\\^\\^)");
-        private PrefixManager prefixManager = null;
         private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+        // Ontology state of the setters, used by the methods without an explicit render context
         private OWLOntology ontology;
+        private PrefixManager prefixManager = null;
+        private OntologyLabelIndex labelIndex;
+        private RenderContext defaultContext;
+        private boolean deterministic = true;
 
-        public void setOntology(OWLOntology ontology){
+        public synchronized void setOntology(OWLOntology ontology){
             this.ontology = ontology;
+            this.labelIndex = null;
+            this.defaultContext = null;
+        }
+
+        /**
+         * Set the label index of the ontology, used to show predicates by their rdfs:label.
+         * If no index is set it is built from the ontology on first use.
+         * @param labelIndex Label index of the current ontology
+         */
+        public synchronized void setLabelIndex(OntologyLabelIndex labelIndex) {
+            this.labelIndex = labelIndex;
+            this.defaultContext = null;
+        }
+
+        /**
+         * @return Render context of the ontology, prefix manager and label index set on this engine
+         */
+        public synchronized RenderContext getDefaultContext() {
+            if (defaultContext == null) {
+                defaultContext = new RenderContext(ontology, prefixManager, labelIndex, Collections.emptyList(), null,
+                        deterministic);
+            }
+            return defaultContext;
+        }
+
+        /**
+         * Enable the deterministic mode of the default context
+         * @details In deterministic mode the atoms of a rule fragment are kept in the
+         *          iteration order of the rule segment (declaration order when given a
+         *          LinkedHashSet), builtins and edges get sequence based identifiers
+         *          and the graph elements are kept in insertion order. Identical rules then
+         *          produce identical graphs and byte-identical images.
+         *          The methods with an explicit render context use the mode of that context.
+         * @param deterministic True to enable the deterministic mode (default)
+         */
+        public synchronized void setDeterministic(boolean deterministic) {
+            this.deterministic = deterministic;
+            this.defaultContext = null;
+        }
+
+        public synchronized boolean isDeterministic() {
+            return deterministic;
+        }
+
+        private static <T> Collection<T> newAtomCollection(boolean deterministic) {
+            return deterministic ? new ArrayList<>() : new HashSet<>();
+        }
+
+        private static <K, V> HashMap<K, V> newMap(boolean deterministic) {
+            return deterministic ? new LinkedHashMap<>() : new HashMap<>();
+        }
+
+        private static String edgeKey(boolean deterministic, int sequence) {
+            return deterministic ? "E" + sequence : new UID().toString();
         }
 
         /**
@@ -44,33 +89,26 @@
          *          By setting the prefix manager, the prefixes
          *          can be appended to the SWRL object labels
          *          for a better visualization with the prefixes
-         *          from the loaded ontology
+         *          from the loaded ontology. The prefixes are copied
+         *          together with the swrl builtin prefixes into the
+         *          render context, the prefix manager is not modified.
          * @param prefixManager
          */
-    
-        /**
-         * Add prefix manager to resolve IRIS for SWRL objects
-         * @param prefixManager
-         */
-        public void setPrefixManager(PrefixManager prefixManager) {
+        public synchronized void setPrefixManager(PrefixManager prefixManager) {
             this.prefixManager = prefixManager;
-            // Add swrl builtin prefixes
-            prefixManager.setPrefix("swrlx:",SWRLX_IRI);
-            prefixManager.setPrefix("swrlb:",SWRLB_IRI);
-            prefixManager.setPrefix("sqwrl:",SQWRL_IRI);
-            prefixManager.setPrefix("swrl:",SWRL_IRI);
-
+            this.defaultContext = null;
         }
     
         /**
          * Get IRI with prefixes from ontology
          * If an IRI has a prefix use its prefix instead
          * of the complete IRI.
+         * @param context Render context with the prefixes
          * @param iri
          * @return
          */
-        private String getIRIPrefix(IRI iri) {
-            String iriPrefix = prefixManager.getPrefixIRI(iri);
+        private String getIRIPrefix(RenderContext context, IRI iri) {
+            String iriPrefix = context.getPrefixIRI(iri);
             // If not found then just return remainder
             if (iriPrefix == null) {
                 return iri.getRemainder().get();
@@ -83,83 +121,95 @@
         }
 
 
-        private String getArgumentValue(SWRLArgument argument) {
-            String argString = argument.toString();
-            // Create a matcher with the input string
-            Matcher iri_match = SWRL_IRI_PATTERN.matcher(argString);
-    
-            // If not an iri check if its a data property value
-            if (!iri_match.find()) {
-                Matcher dataprop_val_match = DATA_PROPERTY_VALUE_PATTERN.matcher(argString);
-                if (dataprop_val_match.find()) {
-                    return dataprop_val_match.group(1);
+        private String getArgumentValue(SWRLArgumentValueVisitor argumentValueVisitor, SWRLArgument argument) {
+            return argument.accept(argumentValueVisitor);
+        }
+    
+        /**
+         * Get the IRI of an atom predicate
+         * @param predicate Predicate of a SWRL atom
+         * @return IRI of the named predicate or of the first entity of an anonymous expression
+         */
+        private IRI getPredicateIRI(SWRLPredicate predicate) {
+            if (predicate instanceof IRI) {
+                // Builtin atoms
+                return (IRI) predicate;
+            }
+            if (predicate instanceof HasIRI) {
+                return ((HasIRI) predicate).getIRI();
+            }
+            if (predicate instanceof OWLObjectInverseOf) {
+                return ((OWLObjectInverseOf) predicate).getNamedProperty().getIRI();
+            }
+            if (predicate instanceof OWLObject) {
+                Optional<OWLEntity> entity = ((OWLObject) predicate).getSignature().stream().findFirst();
+                if (entity.isPresent()) {
+                    return entity.get().getIRI();
                 }
-                return null;
             }
-            String argument_iri =  iri_match.group(1);
-            IRI predicateIRI = IRI.create(iri_match.group(1));
-            argument_iri  = getIRIPrefix(predicateIRI);
-            return argument_iri;
+            return IRI.create(predicate.toString());
         }
     
-        private String getPredicateValue(SWRLPredicate predicate) {
-            Matcher iri_match = SWRL_IRI_PATTERN.matcher(predicate.toString());
-            IRI predicateIRI;
-            if (iri_match.find()) {
-                predicateIRI = IRI.create(iri_match.group(1));
-            } else {
-                // Try to get IRI directly if no match
-                predicateIRI = IRI.create(predicate.toString());
-            }
-            String predicateValue  = getIRIPrefix(predicateIRI);
+        private String getPredicateValue(RenderContext context, SWRLPredicate predicate) {
+            IRI predicateIRI = getPredicateIRI(predicate);
+            String predicateValue  = getIRIPrefix(context, predicateIRI);
             // Attempt to replace predicate value with rdfs:label
-            Set<OWLEntity> entitySet = ontology.getEntitiesInSignature(predicateIRI);
-            if (entitySet.stream().findFirst().isPresent()){
-                OWLEntity entity =entitySet.stream().findFirst().get();
-                Optional<OWLAnnotation> label = getLabelAnnotation(entity, "en",ontology);
-                if (label.isPresent()) {
-                    // Replace value after prefix with rdfs:label
-                    int prefixStart = predicateValue.lastIndexOf(":");
-                    String labelVal = label.get().getValue().asLiteral().get().getLiteral();
-                    // if predicate has prefix
-                    if (prefixStart != -1) {
-                        predicateValue = predicateValue.substring(0, prefixStart + 1) + labelVal;
-                    } else {
-                        predicateValue = labelVal;
-                    }
+            String labelVal = context.getLabelIndex().getLabel(predicateIRI);
+            if (labelVal != null) {
+                // Replace value after prefix with rdfs:label
+                int prefixStart = predicateValue.lastIndexOf(":");
+                // if predicate has prefix
+                if (prefixStart != -1) {
+                    predicateValue = predicateValue.substring(0, prefixStart + 1) + labelVal;
+                } else {
+                    predicateValue = labelVal;
                 }
             }
             return predicateValue;
         }
     
         public ArrayList<CustomSWRLAtom> createSWRLAtomsForTree(HashSet<SWRLAtom> ruleSegment) {
-            HashSet<CustomSWRLAtom> classAtoms = new HashSet<>();
-            HashSet<CustomSWRLAtom> builtInAtoms = new HashSet<>();
-            HashSet<CustomSWRLAtom> dataPropertyAtoms = new HashSet<>();
-            HashSet<CustomSWRLAtom> objectPropertyAtoms = new HashSet<>();
+            return createSWRLAtomsForTree(getDefaultContext(), ruleSegment);
+        }
+
+        /**
+         * Convert the atoms of a rule segment to the atoms of the AOWLN tree.
+         * Only reads the render context, so it can be called concurrently.
+         * @param context Render context of the ontology of the rule
+         * @param ruleSegment Body or head atoms of a rule
+         * @return Atoms for the AOWLN tree
+         */
+        public ArrayList<CustomSWRLAtom> createSWRLAtomsForTree(RenderContext context, HashSet<SWRLAtom> ruleSegment) {
+            SWRLArgumentValueVisitor argumentValueVisitor = new SWRLArgumentValueVisitor(iri -> getIRIPrefix(context, iri));
+            boolean deterministic = context.isDeterministic();
+            Collection<CustomSWRLAtom> classAtoms = newAtomCollection(deterministic);
+            Collection<CustomSWRLAtom> builtInAtoms = newAtomCollection(deterministic);
+            Collection<CustomSWRLAtom> dataPropertyAtoms = newAtomCollection(deterministic);
+            Collection<CustomSWRLAtom> objectPropertyAtoms = newAtomCollection(deterministic);
     
             ArrayList swrlAtomsForTree = new ArrayList();
+            int builtInSequence = 0;
     
             for (SWRLAtom element : ruleSegment) {
                 if (element instanceof SWRLClassAtom) {
-                    String label = getPredicateValue(element.getPredicate());
-                    String key = getArgumentValue(((SWRLClassAtom) element).getArgument());
+                    String label = getPredicateValue(context, element.getPredicate());
+                    String key = getArgumentValue(argumentValueVisitor, ((SWRLClassAtom) element).getArgument());
                     label = label +"\n("+key+")";
                     ClassAtomCustom classAtom = new ClassAtomCustom(key, label);
                     classAtoms.add(classAtom);
     
                 } else if (element instanceof SWRLDataPropertyAtom) {
-                    String label = getPredicateValue(element.getPredicate());
-                    String key = getArgumentValue(((SWRLDataPropertyAtom) element).getSecondArgument());
-                    String firstArgument = getArgumentValue(((SWRLDataPropertyAtom) element).getFirstArgument());
+                    String label = getPredicateValue(context, element.getPredicate());
+                    String key = getArgumentValue(argumentValueVisitor, ((SWRLDataPropertyAtom) element).getSecondArgument());
+                    String firstArgument = getArgumentValue(argumentValueVisitor, ((SWRLDataPropertyAtom) element).getFirstArgument());
                     DataPropertyAtomCustom dataPropAtom = new DataPropertyAtomCustom(firstArgument, key, label);
                     dataPropertyAtoms.add(dataPropAtom);
                 } else if (element instanceof SWRLBuiltInAtom) {
                     //bodyBuiltInAtoms.add(element);
                     //   String label = stringSplit(element.getPredicate().toString())+stringSplit(((SWRLBuiltInAtom) element).getArguments().toArray()[1].toString());
                     //    String key = stringSplit(((SWRLBuiltInAtom) element).getArguments().toArray()[1].toString());
-                    String key = "BI" + new UID();
-                    String label = getPredicateValue(element.getPredicate());
+                    String key = deterministic ? "BI" + builtInSequence++ : "BI" + new UID();
+                    String label = getPredicateValue(context, element.getPredicate());
                     boolean isBound = false;
     
                     List<String> arguments = new ArrayList<>();
@@ -177,7 +227,11 @@
     
                             arguments.add(swrlVariableBuiltInArgument.getVariableName());
                         } else {
-                            String s = ((SWRLDArgument) swrlArgumentList.get(i)).toString();
+                            String s = getArgumentValue(argumentValueVisitor, swrlArgumentList.get(i));
+                            if (s == null) {
+                                // SWRLAPI builtin arguments that are not literals, e.g. class arguments
+                                s = swrlArgumentList.get(i).toString();
+                            }
                             literals.add(s);
                         }
                     }
@@ -187,14 +241,14 @@
     
                 } else if (element instanceof SWRLObjectPropertyAtom) {
                     //bodyObjectPropertyAtoms.add(element);
-                    String label = getPredicateValue(element.getPredicate());
-                    String key = getArgumentValue(((SWRLObjectPropertyAtom) element).getSecondArgument());
-                    String firstArgument = getArgumentValue(((SWRLObjectPropertyAtom) element).getFirstArgument());
+                    String label = getPredicateValue(context, element.getPredicate());
+                    String key = getArgumentValue(argumentValueVisitor, ((SWRLObjectPropertyAtom) element).getSecondArgument());
+                    String firstArgument = getArgumentValue(argumentValueVisitor, ((SWRLObjectPropertyAtom) element).getFirstArgument());
                     ObjectPropertyAtomCustom objectPropAtom = new ObjectPropertyAtomCustom(firstArgument, key, label);
                     objectPropertyAtoms.add(objectPropAtom);
                 } else if (element instanceof SWRLSameIndividualAtom) {
-                    String firstArgument = getArgumentValue(((SWRLSameIndividualAtom) element).getFirstArgument());
-                    String secondArgument = getArgumentValue(((SWRLSameIndividualAtom) element).getSecondArgument());
+                    String firstArgument = getArgumentValue(argumentValueVisitor, ((SWRLSameIndividualAtom) element).getFirstArgument());
+                    String secondArgument = getArgumentValue(argumentValueVisitor, ((SWRLSameIndividualAtom) element).getSecondArgument());
                     ObjectPropertyAtomCustom objectPropAtom = new ObjectPropertyAtomCustom(firstArgument, secondArgument,"owl:SameAs");
                     objectPropertyAtoms.add(objectPropAtom);
                 }
@@ -217,10 +271,26 @@
     
     
         public GraphListsForViz megaAlgorithmus(List<CustomSWRLAtom> ruleFragment) {
+            return megaAlgorithmus(isDeterministic(), ruleFragment);
+        }
+
+        /**
+         * Build the AOWLN graph of a rule fragment.
+         * Only reads the render context, so it can be called concurrently.
+         * @param context Render context of the ontology of the rule, provides the rendering mode
+         * @param ruleFragment Atoms of the AOWLN tree of the body or the head, not modified
+         * @return Graph of the rule fragment
+         */
+        public GraphListsForViz megaAlgorithmus(RenderContext context, List<CustomSWRLAtom> ruleFragment) {
+            return megaAlgorithmus(context.isDeterministic(), ruleFragment);
+        }
+
+        private GraphListsForViz megaAlgorithmus(boolean deterministic, List<CustomSWRLAtom> ruleFragment) {
             HashMap<String, AOWLNElement> aowlnElements;
             HashMap<String, AOWLNEdgeElement> aowlnEdges;
-            aowlnEdges = new HashMap<>();
-            aowlnElements = new HashMap<>();
+            aowlnEdges = newMap(deterministic);
+            aowlnElements = newMap(deterministic);
+            int edgeSequence = 0;
     
             String key = null;
             String label = null;
@@ -230,10 +300,15 @@
     
             //Classes, data and object props
             List<CustomSWRLAtom> standardAtoms = new ArrayList();
-            Map<String, List<BuiltInAtomCustom>> builtInAtomsMap = new HashMap<>();
+            //Builtins indexed by their first argument, in rule fragment order
+            Map<String, List<BuiltInAtomCustom>> builtInsByFirstArg = new HashMap<>();
+            //Variables that get a builtin group, in order of appearance
+            Set<String> builtInGroups = new LinkedHashSet<>();
+            //Edges from data properties to their value variable, by variable
+            Map<String, List<String>> dataValueEdges = new HashMap<>();
     
             for (CustomSWRLAtom swrlAtom : ruleFragment) {
-                logger.info("Label of Atom: " + swrlAtom.getLabel());
+                logger.trace("Label of atom: {}", swrlAtom.getLabel());
                 if (swrlAtom instanceof ClassAtomCustom
                         || swrlAtom instanceof ObjectPropertyAtomCustom
                         || swrlAtom instanceof DataPropertyAtomCustom
@@ -241,36 +316,27 @@
                     standardAtoms.add(swrlAtom);
                 } else if (swrlAtom instanceof BuiltInAtomCustom) {
                     String [] atom_arguments = ((BuiltInAtomCustom) swrlAtom).getArguments();
+                    if (atom_arguments.length == 0) {
+                        // Builtin without variables, nothing to connect
+                        continue;
+                    }
+                    builtInsByFirstArg.computeIfAbsent(atom_arguments[0], arg -> new ArrayList<>())
+                            .add((BuiltInAtomCustom) swrlAtom);
                     // Experimental parsing of sqwrl:select
                     if (Objects.equals(swrlAtom.getLabel(), "sqwrl:select")
                         && atom_arguments.length>1) {
-                        for (String arg : atom_arguments) {
-                            if (!builtInAtomsMap.containsKey(arg)) {
-                                //collect all builtin with same first arg
-                                List<BuiltInAtomCustom> builtinsWithSameFirstArg = new ArrayList<>();
-                                for (CustomSWRLAtom atom : ruleFragment) {
-                                    if (atom instanceof BuiltInAtomCustom && ((BuiltInAtomCustom) atom).getArguments()[0].equals(arg)) {
-                                        builtinsWithSameFirstArg.add((BuiltInAtomCustom) atom);
-                                    }
-                                    builtInAtomsMap.put(arg, builtinsWithSameFirstArg);
-                                }
-                            }
-                        }
+                        Collections.addAll(builtInGroups, atom_arguments);
                     } else {
-                        String firstArg = atom_arguments[0];
-                        if (!builtInAtomsMap.containsKey(firstArg)) {
-                            //collect all builtin with same first arg
-                            List<BuiltInAtomCustom> builtinsWithSameFirstArg = new ArrayList<>();
-                            for (CustomSWRLAtom atom : ruleFragment) {
-                                if (atom instanceof BuiltInAtomCustom && ((BuiltInAtomCustom) atom).getArguments()[0].equals(firstArg)) {
-                                    builtinsWithSameFirstArg.add((BuiltInAtomCustom) atom);
-                                }
-                                builtInAtomsMap.put(firstArg, builtinsWithSameFirstArg);
-                            }
-                        }
+                        builtInGroups.add(atom_arguments[0]);
                     }
                 }
             }
+            //collect all builtin with same first arg
+            Map<String, List<BuiltInAtomCustom>> builtInAtomsMap = newMap(deterministic);
+            for (String arg : builtInGroups) {
+                List<BuiltInAtomCustom> builtinsWithSameFirstArg = builtInsByFirstArg.get(arg);
+                builtInAtomsMap.put(arg, builtinsWithSameFirstArg != null ? builtinsWithSameFirstArg : new ArrayList<>());
+            }
     
             //create AOWLN Elements for standard atoms: Classes, data and object props
             for (CustomSWRLAtom swrlAtom : standardAtoms) {
@@ -289,10 +355,10 @@
                         aowlnElements.put(key, newElement);
                         //Input Edge
                         newEdgeElement = new AOWLNEdgeElement(aowlnElements.get(customSWRLProperty.getFirstArgument()), newElement, EdgeTypeEnum.ObjectProperty);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        aowlnEdges.put(edgeKey(deterministic, edgeSequence++), newEdgeElement);
                         //Output Edge
                         newEdgeElement = new AOWLNEdgeElement(newElement, aowlnElements.get(customSWRLProperty.getKey()), EdgeTypeEnum.ObjectProperty);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        aowlnEdges.put(edgeKey(deterministic, edgeSequence++), newEdgeElement);
                     }
                     if (swrlAtom instanceof DataPropertyAtomCustom) {
                         key = "EL" + swrlAtom.getKey();
@@ -302,7 +368,7 @@
                         aowlnElements.put(key, newElement);
     
                         newEdgeElement = new AOWLNEdgeElement(aowlnElements.get(customSWRLProperty.getFirstArgument()), newElement, EdgeTypeEnum.Normal);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        aowlnEdges.put(edgeKey(deterministic, edgeSequence++), newEdgeElement);
     
                         key = swrlAtom.getKey();
                         label = key;
@@ -311,7 +377,9 @@
                         aowlnElements.put(key, secondElement);
     
                         newEdgeElement = new AOWLNEdgeElement(newElement, secondElement, EdgeTypeEnum.Normal);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        String valueEdgeKey = edgeKey(deterministic, edgeSequence++);
+                        aowlnEdges.put(valueEdgeKey, newEdgeElement);
+                        dataValueEdges.computeIfAbsent(key, k -> new ArrayList<>()).add(valueEdgeKey);
                     }
                 }
             }
@@ -351,7 +419,7 @@
                     for (int k = 1; k < unboundBuiltin.getArguments().length; k++) {
                         String edgeLabel = "";
                         newEdgeElement = new AOWLNEdgeElement(aowlnElements.get(unboundBuiltin.getArguments()[k]), newElement, EdgeTypeEnum.BuiltIn, edgeLabel);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        aowlnEdges.put(edgeKey(deterministic, edgeSequence++), newEdgeElement);
                     }
     
                     if (boundBuiltin.size() > 0) {
@@ -360,11 +428,11 @@
                             labelConcat = labelConcat + determineBuiltinEdgeLabel(b) + "\n";
                         }
                         newEdgeElement = new AOWLNEdgeElement(newElement, varElement, EdgeTypeEnum.BuiltIn, labelConcat);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        aowlnEdges.put(edgeKey(deterministic, edgeSequence++), newEdgeElement);
                     } else {
                         //edge from diamond to variable
                         newEdgeElement = new AOWLNEdgeElement(newElement, varElement, EdgeTypeEnum.Normal);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        aowlnEdges.put(edgeKey(deterministic, edgeSequence++), newEdgeElement);
                     }
                 } else if (!hasUnboundBuiltin && boundBuiltin.size() > 0) {
                     String labelConcat = "";
@@ -375,8 +443,9 @@
                     if (aowlnElements.keySet().contains("EL" + boundBuiltin.get(0).getArguments()[0])) {
                         dataProp = aowlnElements.get("EL" + boundBuiltin.get(0).getArguments()[0]);
                         newEdgeElement = new AOWLNEdgeElement(dataProp, varElement, EdgeTypeEnum.BuiltIn, labelConcat);
-                        removeRedundantEdge(aowlnElements.get("EL" + firstArg), aowlnElements.get(firstArg), aowlnEdges);
-                        aowlnEdges.put(new UID().toString(), newEdgeElement);
+                        removeRedundantEdge(aowlnElements.get("EL" + firstArg), aowlnElements.get(firstArg), aowlnEdges,
+                                dataValueEdges.getOrDefault(firstArg, Collections.emptyList()));
+                        aowlnEdges.put(edgeKey(deterministic, edgeSequence++), newEdgeElement);
                     }
                 }
             }
@@ -393,12 +462,20 @@
             return createGraphListsForViz(aowlnElements, aowlnEdges);
         }
     
-        private boolean removeRedundantEdge(AOWLNElement from, AOWLNElement to, HashMap<String, AOWLNEdgeElement> aowlnEdges) {
+        /**
+         * Remove the first edge between two elements
+         * @param candidateKeys Keys of the edges that can connect both elements, in insertion order
+         */
+        private boolean removeRedundantEdge(AOWLNElement from, AOWLNElement to, HashMap<String, AOWLNEdgeElement> aowlnEdges,
+                                            List<String> candidateKeys) {
     
-            for (Map.Entry<String, AOWLNEdgeElement> entry : aowlnEdges.entrySet()) {
-                String key = entry.getKey();
-                AOWLNElement fromElement = entry.getValue().getFrom();
-                AOWLNElement toElement = entry.getValue().getTo();
+            for (String key : candidateKeys) {
+                AOWLNEdgeElement edge = aowlnEdges.get(key);
+                if (edge == null) {
+                    continue;
+                }
+                AOWLNElement fromElement = edge.getFrom();
+                AOWLNElement toElement = edge.getTo();
                 if (fromElement != null && toElement != null && from.equals(fromElement) && to.equals(toElement)) {
                     aowlnEdges.remove(key);
                     return true;
@@ -434,18 +511,22 @@
     
             NodeInfo[] nodes = new NodeInfo[aowlnElements.size()];
             NodeConnection[] connections = new NodeConnection[aowlnEdges.size()];
+            // identifier -> index of the node, resolves the edge endpoints in constant time
+            Map<String, Integer> nodeIndex = new HashMap<>(aowlnElements.size() * 2);
     
-            for (int i = 0; i < aowlnElements.values().size(); i++) {
-                AOWLNElement element = (AOWLNElement) aowlnElements.values().toArray()[i];
+            int i = 0;
+            for (AOWLNElement element : aowlnElements.values()) {
                 String caption = element.getLabel();
                 String info = element.getIdentifier();
                 String type = element.getElementType().toString();
                 nodes[i] = new NodeInfo(caption, info, type);
+                nodeIndex.putIfAbsent(info, i);
+                i++;
             }
     
-            for (int i = 0; i < aowlnEdges.values().size(); i++) {
-    
-                AOWLNEdgeElement element = (AOWLNEdgeElement) aowlnEdges.values().toArray()[i];
+            i = 0;
+            for (AOWLNEdgeElement element : aowlnEdges.values()) {
+                int connectionIndex = i++;
                 AOWLNElement from = element.getFrom();
                 AOWLNElement to = element.getTo();
                 if (from == null) {
@@ -454,18 +535,23 @@
                 if (to == null) {
                     continue;
                 }
-                NodeInfo nodeInfoParent = getNodeInfo(nodes, element.getFrom().getIdentifier());
-                NodeInfo nodeInfoChild = getNodeInfo(nodes, element.getTo().getIdentifier());
+                NodeInfo nodeInfoParent = getNodeInfo(nodes, nodeIndex, from.getIdentifier());
+                NodeInfo nodeInfoChild = getNodeInfo(nodes, nodeIndex, to.getIdentifier());
                 EdgeTypeEnum edgeTypeEnum = element.getEdgeType();
                 String label = element.getLabel();
-                connections[i] = new NodeConnection(nodeInfoParent, nodeInfoChild, edgeTypeEnum, label);
+                connections[connectionIndex] = new NodeConnection(nodeInfoParent, nodeInfoChild, edgeTypeEnum, label);
             }
     
             return new GraphListsForViz(nodes, connections);
         }
     
+        private NodeInfo getNodeInfo(NodeInfo[] nodes, Map<String, Integer> nodeIndex, String identifier) {
+            Integer index = nodeIndex.get(identifier);
+            return index == null ? null : nodes[index];
+        }
+    
         public NodeInfo getNodeInfo(NodeInfo[] nodes, String identifier) {
-            for (int i = 0; i <= nodes.length; i++) {
+            for (int i = 0; i < nodes.length; i++) {
                 if (nodes[i].getInfo().equals(identifier)) {
                     return nodes[i];
                 }
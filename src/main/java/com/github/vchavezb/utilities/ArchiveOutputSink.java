@@ -0,0 +1,92 @@
+package com.github.vchavezb.utilities;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Base of the sinks that stream all images into a single archive file.
+ * Entries are appended in the order the rules complete. On close an index entry
+ * lists every image with its rule and size, so the archive can be consumed
+ * without scanning it first.
+ */
+public abstract class ArchiveOutputSink implements RuleOutputSink {
+
+    /**
+     * Name of the index entry written last into the archive
+     */
+    public static final String INDEX_NAME = "index.json";
+
+    private final Path file;
+    private final List<String> index = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private boolean closed = false;
+
+    protected ArchiveOutputSink(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Append an entry to the archive, called with the sink locked
+     * @param name Entry name
+     * @param content Entry content
+     * @throws IOException If the entry could not be written
+     */
+    protected abstract void writeEntry(String name, byte[] content) throws IOException;
+
+    /**
+     * Complete the archive and close the file, called with the sink locked
+     * @throws IOException If the archive could not be completed
+     */
+    protected abstract void finish() throws IOException;
+
+    @Override
+    public synchronized void write(String ruleName, String name, byte[] content) throws IOException {
+        if (closed) {
+            throw new IOException("Archive " + file + " is closed");
+        }
+        if (INDEX_NAME.equals(name) || !names.add(name)) {
+            // Archives may hold duplicated names, but extracting them would silently overwrite
+            throw new IOException("Duplicated entry " + name + " in archive " + file);
+        }
+        writeEntry(name, content);
+        index.add("{\"name\": " + JsonUtil.quote(name) + ", \"rule\": " + JsonUtil.quote(ruleName)
+                + ", \"size\": " + content.length + "}");
+    }
+
+    /**
+     * Write an additional entry which is not an image, e.g. a manifest
+     * @param name Entry name
+     * @param content Entry content
+     * @throws IOException If the entry could not be written
+     */
+    public void writeResource(String name, byte[] content) throws IOException {
+        write(null, name, content);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        StringBuilder json = new StringBuilder("{\n  \"entries\": [");
+        for (int i = 0; i < index.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n").append("    ").append(index.get(i));
+        }
+        json.append(index.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        try {
+            writeEntry(INDEX_NAME, json.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            finish();
+        }
+    }
+}
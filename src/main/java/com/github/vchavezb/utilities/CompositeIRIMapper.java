@@ -0,0 +1,145 @@
+package com.github.vchavezb.utilities;
+
+import org.semanticweb.owlapi.annotations.HasPriority;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the ontologies of several root folders as one {@link IRIMapper}. All folders are scanned
+ * in a single parallel pass into one index on the first lookup. When an ontology IRI is found
+ * in several folders, the folder given last takes precedence, as when one mapper per folder is
+ * added to the ontology manager: the manager consults the mapper added last first.
+ * Within a folder the rules of {@link IRIMapper} apply.
+ */
+@HasPriority(1)
+public class CompositeIRIMapper implements OWLOntologyIRIMapper, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompositeIRIMapper.class);
+    private final List<IRIMapper> mappers = new ArrayList<>();
+    private final Map<IRI, IRI> mappings = new ConcurrentHashMap<>();
+    private final Map<String, IRI> oboMappings = new ConcurrentHashMap<>();
+    // Root folder -> scan time of the last scan, in the order of the folders
+    private final Map<File, Long> scanMillis = new LinkedHashMap<>();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private volatile boolean mapped = false;
+
+    /**
+     * @param rootDirectories Root folders, later folders take precedence
+     * @param recursive Sub directories will be searched recursively if {@code true}
+     * @param iriVersion Map the owl:versionIRI of the ontologies as well
+     */
+    public CompositeIRIMapper(@Nonnull List<File> rootDirectories, boolean recursive, boolean iriVersion) {
+        for (File rootDirectory : rootDirectories) {
+            mappers.add(new IRIMapper(rootDirectory, recursive, iriVersion));
+        }
+    }
+
+    /**
+     * Set the number of files sniffed in parallel over all root folders
+     * @param parallelism Number of worker threads, 1 sniffs on the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Persist the mappings of the scanned files, see {@link IRIMapper#setIndexDirectory}
+     * @param indexDirectory Directory of the index files, null to always sniff all files
+     */
+    public void setIndexDirectory(@Nullable File indexDirectory) {
+        for (IRIMapper mapper : mappers) {
+            mapper.setIndexDirectory(indexDirectory);
+        }
+    }
+
+    /**
+     * @return Time of the last scan of each root folder in ms, walking and reading the index
+     *         plus the time spent sniffing its files summed over all threads
+     */
+    public synchronized Map<File, Long> getScanMillis() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(scanMillis));
+    }
+
+    /**
+     * @return Ontology IRIs found in all root folders
+     */
+    public Set<IRI> getOntologyIRIs() {
+        if (!mapped) {
+            mapIfNeeded();
+        }
+        return Collections.unmodifiableSet(mappings.keySet());
+    }
+
+    /**
+     * Scan all root folders again
+     */
+    public void update() {
+        mapFiles();
+    }
+
+    @Override
+    public IRI getDocumentIRI(IRI ontologyIRI) {
+        if (!mapped) {
+            mapIfNeeded();
+        }
+        return IRIMapper.lookup(ontologyIRI, mappings, oboMappings);
+    }
+
+    private synchronized void mapIfNeeded() {
+        if (!mapped) {
+            mapFiles();
+        }
+    }
+
+    private synchronized void mapFiles() {
+        long start = System.nanoTime();
+        List<IRIMapper.Scan> scans = new ArrayList<>(mappers.size());
+        for (IRIMapper mapper : mappers) {
+            scans.add(mapper.prepare());
+        }
+        IRIMapper.sniffAll(scans, parallelism);
+        mappings.clear();
+        oboMappings.clear();
+        scanMillis.clear();
+        int files = 0;
+        int sniffed = 0;
+        for (IRIMapper.Scan scan : scans) {
+            scan.mapper.complete(scan);
+            // Later folders take precedence
+            mappings.putAll(scan.mapper.getMappings());
+            oboMappings.putAll(scan.mapper.getOboMappings());
+            long millis = (scan.walkNanos + scan.sniffNanos.get()) / 1_000_000;
+            scanMillis.put(scan.mapper.getDirectory(), millis);
+            files += scan.candidates.size();
+            sniffed += scan.pending.size();
+            LOGGER.info("Scanned import directory {} in {} ms: {} files, {} sniffed",
+                    scan.mapper.getDirectory(), millis, scan.candidates.size(), scan.pending.size());
+        }
+        mapped = true;
+        LOGGER.info("Mapped {} ontologies of {} import directories in {} ms, {} of {} files sniffed",
+                mappings.size(), mappers.size(), (System.nanoTime() - start) / 1_000_000, sniffed, files);
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeIRIMapper: (" + mappings.size() + " ontologies in " + mappers.size() + " directories)";
+    }
+}
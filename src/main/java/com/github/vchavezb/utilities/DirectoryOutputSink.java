@@ -0,0 +1,34 @@
+package com.github.vchavezb.utilities;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes each rule image as a file of an output directory
+ */
+public class DirectoryOutputSink implements RuleOutputSink {
+
+    private final Path directory;
+
+    /**
+     * @param directory Output directory, it must exist
+     */
+    public DirectoryOutputSink(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void write(String ruleName, String name, byte[] content) throws IOException {
+        Files.write(directory.resolve(name), content);
+    }
+
+    @Override
+    public void close() {
+        // Every image is already on disk
+    }
+}
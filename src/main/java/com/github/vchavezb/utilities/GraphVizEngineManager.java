@@ -0,0 +1,255 @@
+package com.github.vchavezb.utilities;
+
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+import guru.nidi.graphviz.engine.GraphvizCmdLineEngine;
+import guru.nidi.graphviz.engine.GraphvizEngine;
+import guru.nidi.graphviz.engine.GraphvizJdkEngine;
+import guru.nidi.graphviz.engine.GraphvizV8Engine;
+import guru.nidi.graphviz.model.Factory;
+import guru.nidi.graphviz.model.MutableGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Managed Graphviz render engines.
+ * The available engine is probed once (native dot binary first, then the javascript engines)
+ * and installed as the graphviz-java engine. Renders are executed on a fixed pool of engine
+ * threads. The javascript engines keep their initialized context per thread, so each
+ * pool thread owns one initialized engine that is reused for every render it executes.
+ * With warm-up enabled every engine renders a trivial graph when the pool is started,
+ * so the engine initialization is not paid by the first rules.
+ */
+public class GraphVizEngineManager {
+
+    private static GraphVizEngineManager instance;
+    private static final ThreadLocal<Boolean> ENGINE_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    private boolean warmUp = true;
+    private ExecutorService pool;
+    private String engineName;
+
+    private GraphVizEngineManager() {}
+
+    public static synchronized GraphVizEngineManager getInstance() {
+        if (GraphVizEngineManager.instance == null) {
+            GraphVizEngineManager.instance = new GraphVizEngineManager();
+        }
+        return GraphVizEngineManager.instance;
+    }
+
+    /**
+     * Set the number of engines of the pool. Must be set before the pool is started.
+     * @param poolSize Number of engines
+     */
+    public synchronized void setPoolSize(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Engine pool size must be at least 1");
+        }
+        if (pool != null) {
+            throw new IllegalStateException("Engine pool already started");
+        }
+        this.poolSize = poolSize;
+    }
+
+    public synchronized int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Initialize every engine of the pool when it is started instead of on first use.
+     * Must be set before the pool is started.
+     * @param warmUp True to warm up the engines on start
+     */
+    public synchronized void setWarmUp(boolean warmUp) {
+        if (pool != null) {
+            throw new IllegalStateException("Engine pool already started");
+        }
+        this.warmUp = warmUp;
+    }
+
+    public synchronized boolean isWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * @return Name of the engine in use, null if the pool was never started
+     */
+    public synchronized String getEngineName() {
+        return engineName;
+    }
+
+    /**
+     * Probe the render engine without starting the engine pool. Does nothing if already probed.
+     * Used to name the engine in the render cache keys, so a run made of cache hits does not
+     * start and warm up the engines.
+     * @return Name of the engine in use
+     */
+    public synchronized String probe() {
+        if (engineName == null) {
+            engineName = probeEngine();
+        }
+        return engineName;
+    }
+
+    /**
+     * Probe the render engine on the first start and start the engine pool. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (pool != null) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(poolSize, task -> {
+            Thread thread = new Thread(() -> {
+                ENGINE_THREAD.set(true);
+                task.run();
+            }, "graphviz-engine-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Probe once, installing an engine again would release the one used by renders
+        // that are still running on a previous pool
+        if (engineName == null) {
+            // Probe on an engine thread so the probing engine is not wasted on the caller thread
+            try {
+                engineName = pool.submit(this::probeEngine).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                engineName = probeEngine();
+            } catch (ExecutionException e) {
+                engineName = probeEngine();
+            }
+        }
+        if (warmUp) {
+            warmUpPool();
+        }
+        logger.info("Graphviz engine {} started with {} engine(s)", engineName, poolSize);
+    }
+
+    /**
+     * Stop the engine pool. Renders already submitted complete, the next render starts it again.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Execute a Graphviz render on an engine of the pool. The pool is started with the
+     * current settings if needed.
+     * @param render Render task that uses {@link Graphviz}
+     * @return Result of the render task
+     * @throws IOException If the render task fails with an IOException
+     */
+    public <T> T render(Callable<T> render) throws IOException {
+        if (ENGINE_THREAD.get()) {
+            return call(render);
+        }
+        Future<T> result;
+        // Submit under the lock so a concurrent shutdown cannot reject the render
+        synchronized (this) {
+            start();
+            result = pool.submit(render);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the render engine", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static <T> T call(Callable<T> render) throws IOException {
+        try {
+            return render.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Install the first engine that is able to render a trivial graph
+     * @return Name of the installed engine
+     */
+    private String probeEngine() {
+        List<Supplier<GraphvizEngine>> candidates = new ArrayList<>();
+        candidates.add(GraphvizCmdLineEngine::new);
+        candidates.add(GraphvizV8Engine::new);
+        candidates.add(GraphvizJdkEngine::new);
+        for (Supplier<GraphvizEngine> candidate : candidates) {
+            GraphvizEngine engine;
+            try {
+                engine = candidate.get();
+                Graphviz.useEngine(engine);
+                renderTrivialGraph();
+                return engine.getClass().getSimpleName();
+            } catch (RuntimeException | LinkageError e) {
+                logger.debug("Graphviz engine not available: {}", e.toString());
+            }
+        }
+        Graphviz.useDefaultEngines();
+        return "default";
+    }
+
+    private void warmUpPool() {
+        // Block each warm up task until all have started so every pool thread initializes its engine
+        CountDownLatch started = new CountDownLatch(poolSize);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < poolSize; i++) {
+            tasks.add(pool.submit(() -> {
+                started.countDown();
+                started.await();
+                renderTrivialGraph();
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.warn("Could not warm up Graphviz engine: {}", String.valueOf(e.getCause()));
+            }
+        }
+    }
+
+    private static void renderTrivialGraph() {
+        MutableGraph graph = Factory.mutGraph().setDirected(true)
+                .add(Factory.mutNode("a").addLink(Factory.mutNode("b")));
+        Graphviz.fromGraph(graph).render(Format.SVG_STANDALONE).toString();
+    }
+}
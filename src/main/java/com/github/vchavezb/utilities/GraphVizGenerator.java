@@ -15,7 +15,12 @@ import org.slf4j.LoggerFactory;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import guru.nidi.graphviz.model.Factory;
 //import guru.nidi.graphviz.model.Label;
 import guru.nidi.graphviz.model.Link;
@@ -37,19 +42,188 @@ public class GraphVizGenerator {
     private static final String VARIABLE = "Variable";
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final double IMG_SCALE=7.0;
+    private final Format IMG_FORMAT = Format.SVG_STANDALONE;
+    private final RenderCache renderCache;
+    private final RenderMetrics metrics;
+
+    public GraphVizGenerator() {
+        this(null);
+    }
+
+    /**
+     * @param renderCache Cache of rendered images, null to always render
+     */
+    public GraphVizGenerator(RenderCache renderCache) {
+        this(renderCache, null);
+    }
+
+    /**
+     * @param renderCache Cache of rendered images, null to always render
+     * @param metrics Registry of the layout and write times, null to record nothing
+     */
+    public GraphVizGenerator(RenderCache renderCache, RenderMetrics metrics) {
+        this.renderCache = renderCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return Settings that change the rendered image, used as part of the render cache key
+     */
+    public String getRenderSettings() {
+        // The native dot binary and the javascript engines produce different SVG for the same graph
+        // Probing does not start the engine pool, renders that are cache hits do not need it
+        return "format=" + IMG_FORMAT + ";scale=" + IMG_SCALE + ";engine=" + GraphVizEngineManager.getInstance().probe();
+    }
 
     public boolean produceImage(GraphListsForViz graphListsForViz, File out) {
+        return produceImage(graphListsForViz, out, null);
+    }
+
+    /**
+     * Render a rule body or head as an image
+     * @param graphListsForViz Graph of the rule body or head
+     * @param out Image file
+     * @param ruleName Name of the rule, recorded in the JFR events, may be null
+     * @return True if success
+     */
+    public boolean produceImage(GraphListsForViz graphListsForViz, File out, String ruleName) {
+        File dir = out.getAbsoluteFile().getParentFile();
+        return produceImage(graphListsForViz, new DirectoryOutputSink(dir.toPath()), out.getName(), ruleName);
+    }
+
+    /**
+     * Render a rule body or head as an image
+     * @param graphListsForViz Graph of the rule body or head
+     * @param sink Destination of the image
+     * @param imageName Name of the image in the sink
+     * @param ruleName Name of the rule, recorded in the JFR events and the sink index, may be null
+     * @return True if success
+     */
+    public boolean produceImage(GraphListsForViz graphListsForViz, RuleOutputSink sink, String imageName, String ruleName) {
+        try {
+            Image image = render(graphListsForViz, imageName, ruleName);
+            long start = System.nanoTime();
+            WriteImageEvent writeEvent = new WriteImageEvent();
+            writeEvent.begin();
+            sink.write(ruleName, imageName, image.content);
+            RenderMetrics.record(metrics, RenderMetrics.Stage.WRITE, start);
+            if (writeEvent.shouldCommit()) {
+                writeEvent.rule = ruleName;
+                writeEvent.image = imageName;
+                writeEvent.outputSize = image.content.length;
+                writeEvent.fromCache = image.fromCache;
+                writeEvent.commit();
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("Could not render {}: {}", imageName, e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Render a rule body or head into memory
+     * @param graphListsForViz Graph of the rule body or head
+     * @param ruleName Name of the rule, recorded in the JFR events, may be null
+     * @return Content of the image
+     * @throws IOException If the graph could not be rendered
+     */
+    public byte[] renderImage(GraphListsForViz graphListsForViz, String ruleName) throws IOException {
+        return render(graphListsForViz, null, ruleName).content;
+    }
+
+    /**
+     * Render a rule body or head into memory
+     * @param graphListsForViz Graph of the rule body or head
+     * @param ruleName Name of the rule, recorded in the JFR events, may be null
+     * @return Read only buffer with the content of the image
+     * @throws IOException If the graph could not be rendered
+     */
+    public ByteBuffer renderImageBuffer(GraphListsForViz graphListsForViz, String ruleName) throws IOException {
+        return ByteBuffer.wrap(renderImage(graphListsForViz, ruleName)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Render a rule body or head into a stream, the stream is not closed
+     * @param graphListsForViz Graph of the rule body or head
+     * @param out Stream the image is written to
+     * @param ruleName Name of the rule, recorded in the JFR events, may be null
+     * @throws IOException If the graph could not be rendered or written
+     */
+    public void renderImage(GraphListsForViz graphListsForViz, OutputStream out, String ruleName) throws IOException {
+        out.write(renderImage(graphListsForViz, ruleName));
+    }
+
+    /**
+     * Render a rule body or head into a channel, the channel is not closed
+     * @param graphListsForViz Graph of the rule body or head
+     * @param channel Channel the image is written to
+     * @param ruleName Name of the rule, recorded in the JFR events, may be null
+     * @throws IOException If the graph could not be rendered or written
+     */
+    public void renderImage(GraphListsForViz graphListsForViz, WritableByteChannel channel, String ruleName) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(renderImage(graphListsForViz, ruleName));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static class Image {
+        final byte[] content;
+        final boolean fromCache;
+
+        Image(byte[] content, boolean fromCache) {
+            this.content = content;
+            this.fromCache = fromCache;
+        }
+    }
+
+    /**
+     * Copy an image from the render cache, or layout it and store it in the cache
+     */
+    private Image render(GraphListsForViz graphListsForViz, String imageName, String ruleName) throws IOException {
+        long start = System.nanoTime();
+        String cacheKey = null;
+        if (renderCache != null) {
+            cacheKey = RenderCache.key(graphListsForViz, getRenderSettings());
+            byte[] cached = renderCache.fetch(cacheKey);
+            if (cached != null) {
+                RenderMetrics.record(metrics, RenderMetrics.Stage.CACHE_FETCH, start);
+                return new Image(cached, true);
+            }
+        }
+        byte[] image = layout(graphListsForViz, imageName, ruleName);
+        RenderMetrics.record(metrics, RenderMetrics.Stage.LAYOUT, start);
+        if (renderCache != null) {
+            renderCache.store(cacheKey, image);
+        }
+        return new Image(image, false);
+    }
+
+    /**
+     * Layout a rule body or head into memory
+     * @param graphListsForViz Graph of the rule body or head
+     * @param imageName Name of the image, recorded in the JFR event, may be null
+     * @param ruleName Name of the rule, recorded in the JFR event, may be null
+     * @return Content of the image
+     * @throws IOException If the graph could not be rendered
+     */
+    private byte[] layout(GraphListsForViz graphListsForViz, String imageName, String ruleName) throws IOException {
+        LayoutEvent layoutEvent = new LayoutEvent();
+        layoutEvent.begin();
         NodeInfo[] nodes = graphListsForViz.getNodes();
-        ArrayList<MutableNodeExt> mutableNodes = new ArrayList<>();
+        // Node identifier -> graphviz node. The identifier is the graphviz node id
+        // and the caption its label, so nodes with the same caption are kept apart.
+        Map<String, MutableNodeExt> mutableNodes = new LinkedHashMap<>(nodes.length * 2);
         MutableGraph graph =  Factory.mutGraph().setDirected(true);
         for (NodeInfo node : nodes) {
-            MutableNode mutNode = Factory.mutNode(node.getCaption());
+            MutableNode mutNode = Factory.mutNode(node.getInfo()).add(Label.of(node.getCaption()));
             switch (node.getType()) {
                 case CLASS:
                     mutNode.add(Shape.RECTANGLE);
                     break;
                 case PROPERTY:
-                    mutNode.add(Shape.ELLIPSE);
+                    // Ellipse is the Graphviz default, setting it makes the serializer log every property
                     break;
                 case BICOLLECTION:
                     mutNode.add(Shape.DIAMOND);
@@ -58,7 +232,7 @@ public class GraphVizGenerator {
                     mutNode.add(Shape.TRAPEZIUM);
                     break;
             }
-            mutableNodes.add(new MutableNodeExt(mutNode, node.getType()));
+            mutableNodes.putIfAbsent(node.getInfo(), new MutableNodeExt(mutNode, node.getType()));
         }
         NodeConnection[] connections = graphListsForViz.getConnections();
         for (NodeConnection connection : connections) {
@@ -66,22 +240,12 @@ public class GraphVizGenerator {
                 continue;
             NodeInfo childConn = connection.getChild();
             NodeInfo parentConn = connection.getParent();
-            String childCaption = new String();
-            String parentCaption = new String();
+            MutableNodeExt child = null, parent = null;
             if (childConn != null) {
-                childCaption += childConn.getCaption();
+                child = mutableNodes.get(childConn.getInfo());
             }
             if (parentConn != null) {
-                parentCaption += parentConn.getCaption();
-            }
-            MutableNodeExt child = null, parent = null;
-            for (MutableNodeExt mutableNodeExt : mutableNodes) {
-                if (mutableNodeExt.getNode().name().toString().equals(childCaption)) {
-                    child = mutableNodeExt;
-                    continue;
-                }
-                if (mutableNodeExt.getNode().name().toString().equals(parentCaption))
-                    parent = mutableNodeExt;
+                parent = mutableNodes.get(parentConn.getInfo());
             }
             if (child != null && parent != null) {
                 Link childLinkTo = child.getNode().linkTo();
@@ -98,16 +262,20 @@ public class GraphVizGenerator {
             }
         }
         if (connections.length == 0)
-            for (MutableNodeExt node : mutableNodes)
+            for (MutableNodeExt node : mutableNodes.values())
                 graph.add(node.getNode());
 
-        try {
-            Graphviz.fromGraph(graph).scale(IMG_SCALE).render(Format.SVG_STANDALONE).toFile(out);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+        String image = GraphVizEngineManager.getInstance().render(() ->
+                Graphviz.fromGraph(graph).scale(IMG_SCALE).render(IMG_FORMAT).toString());
+        byte[] bytes = image.getBytes(StandardCharsets.UTF_8);
+        if (layoutEvent.shouldCommit()) {
+            layoutEvent.rule = ruleName;
+            layoutEvent.image = imageName;
+            layoutEvent.nodes = nodes.length;
+            layoutEvent.edges = graphListsForViz.getEdgeCount();
+            layoutEvent.outputSize = bytes.length;
+            layoutEvent.commit();
         }
+        return bytes;
     }
-
 }
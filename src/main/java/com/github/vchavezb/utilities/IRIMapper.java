@@ -17,8 +17,27 @@ import org.xml.sax.helpers.DefaultHandler;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,16 +55,25 @@ import static org.semanticweb.owlapi.util.OWLAPIPreconditions.verifyNotNull;
  *
  * A mapper which given a root folder attempts to automatically discover and map files to
  * ontologies. The mapper is capable of mapping ontologies in RDF/XML, OWL/XML, Manchester OWL
- * Syntax, Functional Syntax and OBO (other serialisations are not supported). Zip and jar files
+ * Syntax, Functional Syntax, OBO, Turtle, N-Triples and JSON-LD (other serialisations are not
+ * supported). Turtle, N-Triples and JSON-LD are scanned in their first
+ * {@value #TEXT_HEADER_BYTES} bytes only. Zip and jar files
  * containing ontologies are supported, either as main argument to the constructor or as content of
  * the root folder.
  *
+ * The folder is walked once, the headers of the candidate files are sniffed in parallel on a
+ * fork-join pool, each file with its own parser. Sniffing stops at the end of the ontology
+ * header and reads at most {@link #setMaxHeaderBytes} of a file, so its cost does not depend
+ * on the size of the file. With an index directory the mapping of every
+ * file is persisted together with its size and modification time, so later scans only sniff
+ * the files that were added or changed.
+ *
  * @author Matthew Horridge, The University Of Manchester, Bio-Health Informatics Group
  *          Victor Chavez, IAAM
  * @since 2.0.0
  */
 @HasPriority(1)
-public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, Serializable {
+public class IRIMapper implements OWLOntologyIRIMapper, Serializable {
 
     private static final String ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE =
             "Ontology element found, parsing complete.";
@@ -55,14 +83,22 @@ public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, S
     private static final Logger LOGGER = LoggerFactory.getLogger(org.semanticweb.owlapi.util.AutoIRIMapper.class);
     private final Set<String> fileExtensions =
             new HashSet<>(Arrays.asList(".owl", ".xml", ".rdf", ".omn", ".ofn"));
-    private boolean mapped;
+    private static final String INDEX_HEADER = "aowln-iri-index\t2";
+    static final int TEXT_HEADER_BYTES = 64 * 1024;
+    private static final Set<String> TEXT_EXTENSIONS = new HashSet<>(Arrays.asList(".ttl", ".nt", ".jsonld"));
+    private static final byte[] VERSION_IRI_TOKEN = "versionIRI".getBytes(StandardCharsets.US_ASCII);
+    private volatile boolean mapped;
     private final boolean recursive;
     private final Map<String, OntologyRootElementHandler> handlerMap = createMap();
     private final Map<IRI, IRI> ontologyIRI2PhysicalURIMap = createMap();
     private final Map<String, IRI> oboFileMap = createMap();
     private final String directoryPath;
-    private transient File currentFile;
     private final boolean iriVersion;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long maxHeaderBytes = 1024 * 1024;
+    private boolean prescan = true;
+    @Nullable
+    private String indexDirectory;
 
     /**
      * Creates an auto-mapper which examines ontologies that reside in the specified root folder
@@ -161,6 +197,49 @@ public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, S
         fileExtensions.addAll(extensions);
     }
 
+    /**
+     * Set the number of files sniffed in parallel
+     * @param parallelism Number of worker threads, 1 sniffs on the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the number of bytes read at most from the start of a file to find its ontology header.
+     * Files whose header does not end within the limit are mapped with what was found until then.
+     * @param maxHeaderBytes Maximum number of bytes read per file (default 1 MiB)
+     */
+    public void setMaxHeaderBytes(long maxHeaderBytes) {
+        if (maxHeaderBytes < 1) {
+            throw new IllegalArgumentException("Header limit must be at least 1 byte");
+        }
+        this.maxHeaderBytes = maxHeaderBytes;
+    }
+
+    /**
+     * With owl:versionIRI mapping, search the header of a file for the versionIRI token on a
+     * memory mapped view before parsing it. Files without the token are parsed only up to the
+     * owl:Ontology element.
+     * @param prescan True to prescan the files (default)
+     */
+    public void setPrescan(boolean prescan) {
+        this.prescan = prescan;
+    }
+
+    /**
+     * Persist the mapping of the scanned files in an index, files whose path, size and
+     * modification time did not change since the last scan are not sniffed again.
+     * Each root folder has its own index file in the directory.
+     * @param indexDirectory Directory of the index files, null to always sniff all files
+     */
+    public void setIndexDirectory(@Nullable File indexDirectory) {
+        this.indexDirectory = indexDirectory == null ? null : indexDirectory.getAbsolutePath();
+    }
+
     /**
      * Gets the set of ontology IRIs that this mapper has found.
      *
@@ -168,7 +247,7 @@ public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, S
      */
     public Set<IRI> getOntologyIRIs() {
         if (!mapped) {
-            mapFiles();
+            mapIfNeeded();
         }
         return new HashSet<>(ontologyIRI2PhysicalURIMap.keySet());
     }
@@ -182,75 +261,283 @@ public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, S
 
     @Override
     public IRI getDocumentIRI(IRI ontologyIRI) {
+        if (!mapped) {
+            mapIfNeeded();
+        }
+        return lookup(ontologyIRI, ontologyIRI2PhysicalURIMap, oboFileMap);
+    }
+
+    private synchronized void mapIfNeeded() {
         if (!mapped) {
             mapFiles();
         }
+    }
+
+    private synchronized void mapFiles() {
+        Scan scan = prepare();
+        sniffAll(Collections.singletonList(scan), parallelism);
+        complete(scan);
+    }
+
+    /**
+     * Files of one scan of the root folder, the files found in the index are already mapped
+     */
+    static class Scan {
+        final IRIMapper mapper;
+        final List<FileState> candidates;
+        final List<FileMappings> results;
+        // Indexes of the candidates that must be sniffed
+        final List<Integer> pending = new ArrayList<>();
+        final int indexed;
+        final long walkNanos;
+        final AtomicLong sniffNanos = new AtomicLong();
+
+        Scan(IRIMapper mapper, List<FileState> candidates, int indexed, long walkNanos) {
+            this.mapper = mapper;
+            this.candidates = candidates;
+            this.results = new ArrayList<>(Collections.nCopies(candidates.size(), null));
+            this.indexed = indexed;
+            this.walkNanos = walkNanos;
+        }
+    }
+
+    /**
+     * Walk the root folder and take the mappings of the unchanged files from the index
+     */
+    Scan prepare() {
+        long start = System.nanoTime();
+        List<FileState> candidates = walk();
+        Map<String, FileMappings> index = readIndex();
+        Scan scan = new Scan(this, candidates, index.size(), System.nanoTime() - start);
+        for (int i = 0; i < candidates.size(); i++) {
+            FileMappings indexed = index.get(candidates.get(i).path);
+            if (indexed != null && indexed.state.equals(candidates.get(i))) {
+                scan.results.set(i, indexed);
+            } else {
+                scan.pending.add(i);
+            }
+        }
+        return scan;
+    }
+
+    /**
+     * Sniff the pending files of several scans in a single pass
+     * @param scans Prepared scans
+     * @param parallelism Number of worker threads, 1 sniffs on the calling thread
+     */
+    static void sniffAll(List<Scan> scans, int parallelism) {
+        List<Scan> owners = new ArrayList<>();
+        List<Integer> files = new ArrayList<>();
+        for (Scan scan : scans) {
+            for (int i : scan.pending) {
+                owners.add(scan);
+                files.add(i);
+            }
+        }
+        if (parallelism == 1 || files.size() < 2) {
+            for (int t = 0; t < files.size(); t++) {
+                sniffInto(owners.get(t), files.get(t));
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, files.size()));
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(files.size());
+            for (int t = 0; t < files.size(); t++) {
+                Scan scan = owners.get(t);
+                int i = files.get(t);
+                tasks.add(() -> {
+                    sniffInto(scan, i);
+                    return null;
+                });
+            }
+            List<Future<Void>> futures = pool.invokeAll(tasks);
+            for (int t = 0; t < futures.size(); t++) {
+                try {
+                    futures.get(t).get();
+                } catch (ExecutionException e) {
+                    FileState state = owners.get(t).candidates.get(files.get(t));
+                    LOGGER.debug("Exception sniffing {}: {}", state.path, e.getCause().toString());
+                    owners.get(t).results.set(files.get(t), new FileMappings(state));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while mapping import directories", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Sniff one file of a scan, a file that cannot be sniffed is mapped as empty
+     */
+    private static void sniffInto(Scan scan, int i) {
+        long start = System.nanoTime();
+        FileState state = scan.candidates.get(i);
+        FileMappings result;
+        try {
+            result = scan.mapper.sniff(state);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Exception sniffing {}: {}", state.path, e.toString());
+            result = new FileMappings(state);
+        }
+        // Each task writes a different slot of the preallocated list
+        scan.results.set(i, result);
+        scan.sniffNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Replace the mappings with the result of a scan and update the index
+     */
+    synchronized void complete(Scan scan) {
+        ontologyIRI2PhysicalURIMap.clear();
+        oboFileMap.clear();
+        for (FileMappings result : scan.results) {
+            File file = new File(result.state.path);
+            for (IRI ontologyIRI : result.ontologyIRIs) {
+                addMapping(ontologyIRI, file);
+            }
+            ontologyIRI2PhysicalURIMap.putAll(result.archived);
+            oboFileMap.putAll(result.obo);
+        }
+        if (!scan.pending.isEmpty() || scan.indexed != scan.results.size()) {
+            writeIndex(scan.results);
+        }
+        mapped = true;
+        LOGGER.debug("Mapped {} ontologies in {} files of {}, {} files sniffed, walk {} ms, sniff {} ms",
+                ontologyIRI2PhysicalURIMap.size(), scan.candidates.size(), directoryPath, scan.pending.size(),
+                scan.walkNanos / 1_000_000, scan.sniffNanos.get() / 1_000_000);
+    }
+
+    /**
+     * Ontology IRI to document IRI of the last scan, read only
+     */
+    Map<IRI, IRI> getMappings() {
+        return Collections.unmodifiableMap(ontologyIRI2PhysicalURIMap);
+    }
+
+    /**
+     * OBO file name to document IRI of the last scan, read only
+     */
+    Map<String, IRI> getOboMappings() {
+        return Collections.unmodifiableMap(oboFileMap);
+    }
+
+    /**
+     * Look up the document of an ontology, OBO ontologies are looked up by their file name
+     */
+    @Nullable
+    static IRI lookup(IRI ontologyIRI, Map<IRI, IRI> mappings, Map<String, IRI> oboMappings) {
         if (ontologyIRI.toString().endsWith(".obo")) {
             String path = ontologyIRI.toURI().getPath();
             if (path != null) {
                 int lastSepIndex = path.lastIndexOf('/');
                 String name = path.substring(lastSepIndex + 1, path.length());
-                IRI documentIRI = oboFileMap.get(name);
+                IRI documentIRI = oboMappings.get(name);
                 if (documentIRI != null) {
                     return documentIRI;
                 }
             }
         }
-        return ontologyIRI2PhysicalURIMap.get(ontologyIRI);
+        return mappings.get(ontologyIRI);
     }
 
-    private void mapFiles() {
-        mapped = true;
-        ontologyIRI2PhysicalURIMap.clear();
-        processFile(getDirectory());
-    }
-
-    private void processFile(File f) {
-        if (f.isHidden()) {
-            return;
-        }
-        // if pointed directly at a zip file, map it
-        parseIfExtensionSupported(f);
-        File[] files = f.listFiles();
-        if (files == null) {
-            return;
-        }
-        for (File file : files) {
-            if (file.isDirectory() && recursive) {
-                processFile(file);
-            } else {
-                parseIfExtensionSupported(file);
+    /**
+     * @return The files with a supported extension below the root folder, sorted by path
+     */
+    private List<FileState> walk() {
+        Path root = getDirectory().toPath();
+        List<FileState> candidates = new ArrayList<>();
+        try {
+            if (Files.isHidden(root)) {
+                return candidates;
             }
+            // Shared import directories are often symbolic links, or contain some
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), recursive ? Integer.MAX_VALUE : 1,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                            return !dir.equals(root) && Files.isHidden(dir) ? FileVisitResult.SKIP_SUBTREE
+                                    : FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile() && isSupported(file.getFileName().toString())) {
+                                candidates.add(new FileState(file.toAbsolutePath().toString(), attrs.size(),
+                                        attrs.lastModifiedTime().toMillis()));
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            if (e instanceof FileSystemLoopException) {
+                                LOGGER.debug("Skipping symbolic link loop {}", file);
+                                return FileVisitResult.CONTINUE;
+                            }
+                            LOGGER.debug("Cannot read {}: {}", file, e.toString());
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            LOGGER.debug("Cannot walk {}: {}", root, e.toString());
         }
+        candidates.sort(Comparator.comparing(state -> state.path));
+        return candidates;
     }
 
-    protected void parseIfExtensionSupported(File file) {
-        String name = file.getName();
+    @Nullable
+    private static String extension(String name) {
         int lastIndexOf = name.lastIndexOf('.');
-        if (lastIndexOf < 0) {
+        return lastIndexOf < 0 ? null : name.substring(lastIndexOf).toLowerCase();
+    }
+
+    private boolean isSupported(String name) {
+        String extension = extension(name);
+        if (extension == null) {
             // no extension for the file, nothing to do
-            return;
+            return false;
         }
-        String extension = name.substring(lastIndexOf);
-        if (".zip".equalsIgnoreCase(extension) || ".jar".equalsIgnoreCase(extension)) {
+        return extension.equals(".zip") || extension.equals(".jar") || extension.equals(".obo")
+                || extension.equals(".ofn") || extension.equals(".omn") || TEXT_EXTENSIONS.contains(extension)
+                || fileExtensions.contains(extension);
+    }
+
+    /**
+     * Find the ontologies of a file, only reads state of the mapper which does not change while mapping
+     */
+    private FileMappings sniff(FileState state) {
+        File file = new File(state.path);
+        FileMappings result = new FileMappings(state);
+        String extension = extension(file.getName());
+        if (".zip".equals(extension) || ".jar".equals(extension)) {
             try {
                 ZipIRIMapper mapper = new ZipIRIMapper(file, "jar:" + file.toURI() + "!/");
-                mapper.oboMappings().forEach(e -> oboFileMap.put(e.getKey(), e.getValue()));
-                mapper.iriMappings()
-                        .forEach(e -> ontologyIRI2PhysicalURIMap.put(e.getKey(), e.getValue()));
+                mapper.oboMappings().forEach(e -> result.obo.put(e.getKey(), e.getValue()));
+                mapper.iriMappings().forEach(e -> result.archived.put(e.getKey(), e.getValue()));
             } catch (IOException e) {
                 // if we can't parse a file, then we can't map it
                 LOGGER.debug("Exception reading file", e);
             }
+        } else if (".obo".equals(extension)) {
+            result.obo.put(file.getName(), IRI.create(file));
+        } else if (".ofn".equals(extension)) {
+            addIfFound(result, parseFSSFile(file));
+        } else if (".omn".equals(extension)) {
+            addIfFound(result, parseManchesterSyntaxFile(file));
+        } else if (TEXT_EXTENSIONS.contains(extension)) {
+            result.ontologyIRIs.addAll(scanTextFile(file, extension));
+        } else {
+            result.ontologyIRIs.addAll(parseFile(file));
+        }
+        return result;
+    }
 
-        } else if (".obo".equalsIgnoreCase(extension)) {
-            oboFileMap.put(name, IRI.create(file));
-        } else if (".ofn".equalsIgnoreCase(extension)) {
-            parseFSSFile(file);
-        } else if (".omn".equalsIgnoreCase(extension)) {
-            parseManchesterSyntaxFile(file);
-        } else if (fileExtensions.contains(extension.toLowerCase())) {
-            parseFile(file);
+    private static void addIfFound(FileMappings result, @Nullable IRI ontologyIRI) {
+        if (ontologyIRI != null) {
+            result.ontologyIRIs.add(ontologyIRI);
         }
     }
 
@@ -258,9 +545,11 @@ public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, S
      * Search first 100 lines for FSS style Ontology(&lt;IRI&gt; ...
      *
      * @param file the file to parse
+     * @return The ontology IRI, null if not found
      */
-    private void parseFSSFile(File file) {
-        try (InputStream input = new FileInputStream(file);
+    @Nullable
+    private IRI parseFSSFile(File file) {
+        try (InputStream input = new HeaderInputStream(new FileInputStream(file), maxHeaderBytes);
              Reader reader = new InputStreamReader(input, "UTF-8");
              BufferedReader br = new BufferedReader(reader)) {
             String line = "";
@@ -271,46 +560,106 @@ public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, S
                 if (m.matches()) {
                     String group = m.group(1);
                     assert group != null;
-                    addMapping(IRI.create(group), file);
-                    break;
+                    return IRI.create(group);
                 }
             }
         } catch (IOException e) {
             // if we can't parse a file, then we can't map it
             LOGGER.debug("Exception reading file", e);
         }
+        return null;
     }
 
-    private void parseFile(File file) {
+    private List<IRI> parseFile(File file) {
+        HeaderHandler handler = new HeaderHandler(iriVersion && (!prescan || mayHaveVersionIRI(file)));
+        HeaderInputStream header = null;
         try (FileInputStream in = new FileInputStream(file);
              BufferedInputStream delegate = new BufferedInputStream(in);
              InputStream is = OWLOntologyDocumentSourceBase.wrap(delegate);) {
-            currentFile = file;
+            header = new HeaderInputStream(is, maxHeaderBytes);
             // Using the default expansion limit. If the ontology IRI cannot be
             // found before 64000 entities are expanded, the file is too
             // expensive to parse.
-            SAXParsers.initParserWithOWLAPIStandards(null, "64000").parse(is, this);
+            SAXParsers.initParserWithOWLAPIStandards(null, "64000").parse(header, handler);
         } catch (SAXException e) {
             // Exceptions thrown to halt parsing early when the ontology IRI is found
             // should not be logged because they are not actual errors, only a performance hack.
-            if (!Objects.equals(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE, e.getMessage())) {
+            if (header != null && header.isExhausted()) {
+                LOGGER.debug("No end of the ontology header in the first {} bytes of {}", maxHeaderBytes, file);
+            } else if (!Objects.equals(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE, e.getMessage())) {
                 LOGGER.debug("SAX Exception reading file", e);
             }
         } catch (IOException e) {
             // if we can't parse a file, then we can't map it
             LOGGER.debug("IO Exception reading file", e);
         }
+        return handler.ontologyIRIs;
     }
 
-    private void parseManchesterSyntaxFile(File file) {
-        try (FileInputStream input = new FileInputStream(file);
+    /**
+     * Search the versionIRI token in the header of a file on a memory mapped view
+     * @param file the file to search
+     * @return False if the header certainly has no owl:versionIRI
+     */
+    private boolean mayHaveVersionIRI(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = Math.min(channel.size(), maxHeaderBytes);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (length >= 2 && ((buffer.get(0) & 0xff) == 0xfe || (buffer.get(0) & 0xff) == 0xff || buffer.get(0) == 0
+                    || buffer.get(1) == 0)) {
+                // UTF-16 or UTF-32, the ASCII token cannot be searched
+                return true;
+            }
+            byte first = VERSION_IRI_TOKEN[0];
+            for (int i = 0, last = (int) length - VERSION_IRI_TOKEN.length; i <= last; i++) {
+                if (buffer.get(i) != first) {
+                    continue;
+                }
+                int j = 1;
+                while (j < VERSION_IRI_TOKEN.length && buffer.get(i + j) == VERSION_IRI_TOKEN[j]) {
+                    j++;
+                }
+                if (j == VERSION_IRI_TOKEN.length) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.debug("Cannot prescan {}: {}", file, e.toString());
+            return true;
+        }
+    }
+
+    /**
+     * Scan the header of a Turtle, N-Triples or JSON-LD file without parsing the file
+     *
+     * @param file the file to scan
+     * @param extension extension of the file
+     * @return The ontology IRIs, and version IRIs if mapped
+     */
+    private List<IRI> scanTextFile(File file, String extension) {
+        try {
+            String header = TextHeaderScanner.readHeader(file.toPath(), (int) Math.min(maxHeaderBytes, TEXT_HEADER_BYTES));
+            return ".jsonld".equals(extension) ? TextHeaderScanner.scanJsonLd(header, iriVersion)
+                    : TextHeaderScanner.scanTurtle(header, iriVersion);
+        } catch (IOException e) {
+            // if we can't parse a file, then we can't map it
+            LOGGER.debug("Exception reading file", e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Nullable
+    private IRI parseManchesterSyntaxFile(File file) {
+        try (InputStream input = new HeaderInputStream(new FileInputStream(file), maxHeaderBytes);
              InputStreamReader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
              BufferedReader br = new BufferedReader(reader)) {
             // Ontology: <URI>
             String line = br.readLine();
             while (line != null) {
-                if (parseManLine(file, line) != null) {
-                    return;
+                IRI iri = parseManLine(line);
+                if (iri != null) {
+                    return iri;
                 }
                 line = br.readLine();
             }
@@ -318,39 +667,295 @@ public class IRIMapper extends DefaultHandler implements OWLOntologyIRIMapper, S
             // if we can't parse a file, then we can't map it
             LOGGER.debug("Exception reading file", e);
         }
+        return null;
     }
 
     @Nullable
-    private IRI parseManLine(File file, String line) {
+    private IRI parseManLine(String line) {
         Matcher matcher = manPattern.matcher(line);
         if (matcher.matches()) {
-            IRI iri = IRI.create(matcher.group(1));
-            addMapping(iri, file);
-            return iri;
+            return IRI.create(matcher.group(1));
         }
         return null;
     }
 
-    @Override
-    public void startElement(String uri, String localName, String qName, Attributes attributes)
-            throws SAXException {
-        String tag = uri + localName;
-        OntologyRootElementHandler handler = handlerMap.get(tag);
-        if (handler != null) {
-            IRI ontologyIRI = handler.handle(checkNotNull(attributes));
-            if (ontologyIRI != null && currentFile != null) {
-                addMapping(ontologyIRI, verifyNotNull(currentFile));
+    /**
+     * SAX handler of a single RDF/XML or OWL/XML file, collects the ontology IRIs of its header
+     */
+    private class HeaderHandler extends DefaultHandler {
+        final List<IRI> ontologyIRIs = new ArrayList<>();
+        private final boolean mapVersionIRI;
+        private int depth = 0;
+        private int ontologyDepth = -1;
+        // OWL/XML document, its Ontology element is the root
+        private boolean owlXml = false;
+
+        /**
+         * @param mapVersionIRI Search the owl:versionIRI of the ontology header
+         */
+        HeaderHandler(boolean mapVersionIRI) {
+            this.mapVersionIRI = mapVersionIRI;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            depth++;
+            String tag = uri + localName;
+            if (owlXml && depth == ontologyDepth + 1 && !isOWLXMLHeaderElement(uri, localName)) {
+                // First axiom of an OWL/XML document, end of the ontology header
+                throw new SAXException(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE);
+            }
+            OntologyRootElementHandler handler = handlerMap.get(tag);
+            if (handler != null) {
+                IRI ontologyIRI = handler.handle(checkNotNull(attributes));
+                if (ontologyIRI != null) {
+                    ontologyIRIs.add(ontologyIRI);
+                }
+            }
+            if (tag.equals("http://www.w3.org/2002/07/owl#Ontology")) {
+                // Do not throw completion exception if owl:versionIRI will also be mapped
+                if (!mapVersionIRI) {
+                    throw new SAXException(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE);
+                }
+                if (depth == 1) {
+                    // In OWL/XML the version IRI is an attribute of the Ontology element
+                    String versionIRI = attributes.getValue("versionIRI");
+                    if (versionIRI != null) {
+                        ontologyIRIs.add(IRI.create(versionIRI));
+                        throw new SAXException(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE);
+                    }
+                    owlXml = true;
+                }
+                ontologyDepth = depth;
             }
+            if (tag.equals("http://www.w3.org/2002/07/owl#versionIRI")) {
+                ontologyIRIs.add(IRI.create(attributes.getValue(0)));
+                throw new SAXException(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (depth == ontologyDepth) {
+                // End of the ontology header without owl:versionIRI
+                throw new SAXException(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE);
+            }
+            depth--;
+        }
+
+        private boolean isOWLXMLHeaderElement(String uri, String localName) {
+            return Namespaces.OWL.toString().equals(uri)
+                    && (localName.equals("Prefix") || localName.equals("Import") || localName.equals("Annotation"));
         }
-        // Do not throw completion exception if owl:versionIRI will also be mapped
-        if (tag.equals("http://www.w3.org/2002/07/owl#Ontology") && !iriVersion) {
-            throw new SAXException(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE);
+    }
+
+    /**
+     * Ends the stream after a number of bytes, bounds the part of a file read to find its header
+     */
+    private static class HeaderInputStream extends FilterInputStream {
+        private long remaining;
+        private boolean exhausted = false;
+
+        HeaderInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
         }
-        if (tag.equals("http://www.w3.org/2002/07/owl#versionIRI")) {
-            IRI ontologyIRI = IRI.create(attributes.getValue(0));
-            addMapping(ontologyIRI, verifyNotNull(currentFile));
-            throw new SAXException(ONTOLOGY_ELEMENT_FOUND_PARSING_COMPLETE);
+
+        boolean isExhausted() {
+            return exhausted;
         }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                exhausted = true;
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                exhausted = true;
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Path, size and modification time of a scanned file
+     */
+    static class FileState {
+        final String path;
+        final long size;
+        final long modified;
+
+        FileState(String path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileState)) {
+                return false;
+            }
+            FileState other = (FileState) o;
+            return path.equals(other.path) && size == other.size && modified == other.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified);
+        }
+    }
+
+    /**
+     * Ontologies found in a scanned file
+     */
+    static class FileMappings {
+        final FileState state;
+        // Ontology IRIs of the file itself
+        final List<IRI> ontologyIRIs = new ArrayList<>();
+        // Ontology IRI -> document IRI of the ontologies in a zip or jar file
+        final Map<IRI, IRI> archived = new LinkedHashMap<>();
+        // OBO file name -> document IRI
+        final Map<String, IRI> obo = new LinkedHashMap<>();
+
+        FileMappings(FileState state) {
+            this.state = state;
+        }
+    }
+
+    @Nullable
+    private Path indexFile() {
+        if (indexDirectory == null) {
+            return null;
+        }
+        // One index per root folder and per setting that changes the sniffed mappings
+        String key = directoryPath + '\0' + recursive + '\0' + iriVersion + '\0' + new TreeSet<>(fileExtensions)
+                + '\0' + maxHeaderBytes + '\0' + prescan;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder("iri-index-");
+            for (int i = 0; i < 8; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return Paths.get(indexDirectory, name.append(".tsv").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the persisted index, an unreadable index is ignored and all files are sniffed
+     * @return Path -> mappings of the file when it was indexed
+     */
+    private Map<String, FileMappings> readIndex() {
+        Map<String, FileMappings> index = new HashMap<>();
+        Path file = indexFile();
+        if (file == null || !Files.isRegularFile(file)) {
+            return index;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!INDEX_HEADER.equals(reader.readLine())) {
+                LOGGER.debug("Ignoring index {} of another version", file);
+                return index;
+            }
+            FileMappings current = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                switch (fields[0]) {
+                    case "F":
+                        current = new FileMappings(new FileState(fields[1], Long.parseLong(fields[2]),
+                                Long.parseLong(fields[3])));
+                        index.put(current.state.path, current);
+                        break;
+                    case "I":
+                        verifyNotNull(current).ontologyIRIs.add(IRI.create(fields[1]));
+                        break;
+                    case "Z":
+                        verifyNotNull(current).archived.put(IRI.create(fields[1]), IRI.create(fields[2]));
+                        break;
+                    case "O":
+                        verifyNotNull(current).obo.put(fields[1], IRI.create(fields[2]));
+                        break;
+                    default:
+                        throw new IOException("Unknown record " + fields[0]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Ignoring unreadable IRI index {}: {}", file, e.toString());
+            index.clear();
+        }
+        return index;
+    }
+
+    private void writeIndex(List<FileMappings> results) {
+        Path file = indexFile();
+        if (file == null) {
+            return;
+        }
+        StringBuilder index = new StringBuilder(INDEX_HEADER).append('\n');
+        for (FileMappings result : results) {
+            if (hasSeparator(result.state.path)) {
+                // Cannot be stored, the file is sniffed on every scan
+                continue;
+            }
+            index.append("F\t").append(result.state.path).append('\t').append(result.state.size)
+                    .append('\t').append(result.state.modified).append('\n');
+            for (IRI ontologyIRI : result.ontologyIRIs) {
+                index.append("I\t").append(ontologyIRI).append('\n');
+            }
+            result.archived.forEach((k, v) -> index.append("Z\t").append(k).append('\t').append(v).append('\n'));
+            result.obo.forEach((k, v) -> index.append("O\t").append(k).append('\t').append(v).append('\n'));
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(tmp, index.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write IRI index {}: {}", file, e.toString());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // nothing else to clean up
+            }
+        }
+    }
+
+    private static boolean hasSeparator(String value) {
+        return value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
     }
 
     /**
@@ -0,0 +1,33 @@
+package com.github.vchavezb.utilities;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of the Graphviz layout of a rule body or head
+ */
+@Name("com.github.vchavezb.Layout")
+@Label("Graphviz Layout")
+@Category("AOWLN")
+@Description("Creation of the graphviz graph of a rule body or head and its layout")
+public class LayoutEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Image")
+    String image;
+
+    @Label("Nodes")
+    int nodes;
+
+    @Label("Edges")
+    int edges;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputSize;
+}
@@ -0,0 +1,33 @@
+package com.github.vchavezb.utilities;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of loading an ontology: parsing with its imports, label index and SWRL rules
+ */
+@Name("com.github.vchavezb.LoadOntology")
+@Label("Load Ontology")
+@Category("AOWLN")
+@Description("Parsing of an ontology with its imports and reading of its SWRL rules")
+public class LoadOntologyEvent extends jdk.jfr.Event {
+
+    @Label("Ontology")
+    String ontology;
+
+    @Label("File Size")
+    @DataAmount
+    long fileSize;
+
+    @Label("Imported Ontologies")
+    int importedOntologies;
+
+    @Label("Axioms")
+    int axioms;
+
+    @Label("Rules")
+    int rules;
+}
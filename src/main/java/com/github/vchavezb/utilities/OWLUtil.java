@@ -6,6 +6,8 @@ import org.semanticweb.owlapi.search.EntitySearcher;
 import org.semanticweb.owlapi.util.AutoIRIMapper;
 import org.semanticweb.owlapi.util.DefaultPrefixManager;
 import org.swrlapi.core.*;
+import org.swrlapi.exceptions.SWRLAPIException;
+import org.swrlapi.exceptions.SWRLBuiltInException;
 import org.swrlapi.factory.SWRLAPIFactory;
 import org.swrlapi.factory.SWRLAPIInternalFactory;
 
@@ -20,6 +22,13 @@ public class OWLUtil {
     private OWLOntology ontology;
     private DefaultPrefixManager prefixManager;
     private Set<SWRLAPIRule> allRules;
+    private OntologyLabelIndex labelIndex;
+    private List<String> labelLanguages = OntologyLabelIndex.DEFAULT_LANGUAGES;
+    private boolean parallelLabelIndex = false;
+    private boolean useRuleEngine = false;
+    private IRIResolver iriResolver;
+    private RenderMetrics metrics;
+    private File importIndexDirectory;
 
     /**
      * @brief Load prefixes from the ontology document to the swrl iri resolver
@@ -30,7 +39,7 @@ public class OWLUtil {
      */
     private void loadPrefixes(IRIResolver iriResolver) {
         OWLDocumentFormat format = manager.getOntologyFormat(ontology);
-        if (format.isPrefixOWLOntologyFormat()) {
+        if (format != null && format.isPrefixOWLOntologyFormat()) {
             // this is the map you need
             Map<String, String> map = format.asPrefixOWLOntologyFormat().getPrefixName2PrefixMap();
             for (Map.Entry<String, String> entry : map.entrySet()) {
@@ -60,32 +69,134 @@ public class OWLUtil {
         }
     }
     public void loadOntology(String filepath, ArrayList<String> imports) {
-        manager = OWLManager.createOWLOntologyManager();
+        LoadOntologyEvent event = new LoadOntologyEvent();
+        event.begin();
+        manager = OWLManager.createConcurrentOWLOntologyManager();
         try {
             if (imports!=null){
+                List<File> importDirs = new ArrayList<>();
                 for (String importDir : imports) {
                     File importDirFile = new File(importDir);
                     if (importDirFile.exists()) {
-                        IRIMapper mapper = new IRIMapper(importDirFile, true,true);
-                        manager.getIRIMappers().add(mapper);
+                        importDirs.add(importDirFile);
                     }
                 }
+                if (!importDirs.isEmpty()) {
+                    // One pass over all directories, the last directory wins on conflicts
+                    CompositeIRIMapper mapper = new CompositeIRIMapper(importDirs, true, true);
+                    mapper.setIndexDirectory(importIndexDirectory);
+                    manager.getIRIMappers().add(mapper);
+                }
             }
+            long start = System.nanoTime();
             ontology = manager.loadOntologyFromOntologyDocument(FileUtil.getInputStream(filepath));
+            RenderMetrics.record(metrics, RenderMetrics.Stage.LOAD_ONTOLOGY, start);
         } catch (OWLOntologyCreationException e) {
             e.printStackTrace();
         }
         prefixManager = new DefaultPrefixManager(null, null, ontology.getOntologyID().getOntologyIRI().get().toString() + "#");
         loadPrefixes(prefixManager);
-        allRules = getSWRLRuleEngine().getSWRLRules();
+        indexAndLoadRules();
+        if (event.shouldCommit()) {
+            event.ontology = filepath;
+            event.fileSize = new File(filepath).length();
+            event.importedOntologies = ontology.getImports().size();
+            event.axioms = ontology.getAxiomCount();
+            event.rules = allRules.size();
+            event.commit();
+        }
     }
 
     public void setOntology(OWLOntology ontology) {
-        manager = OWLManager.createOWLOntologyManager();
+        manager = OWLManager.createConcurrentOWLOntologyManager();
         this.ontology = ontology;
         prefixManager = new DefaultPrefixManager(null, null, ontology.getOntologyID().getOntologyIRI().get().toString() + "#");
-        allRules = getSWRLRuleEngine().getSWRLRules();
+        indexAndLoadRules();
+    }
+
+    private void indexAndLoadRules() {
+        long start = System.nanoTime();
+        labelIndex = OntologyLabelIndex.build(ontology, labelLanguages, parallelLabelIndex);
+        start = RenderMetrics.record(metrics, RenderMetrics.Stage.LABEL_INDEX, start);
+        iriResolver = createIRIResolver();
+        allRules = loadRules();
+        RenderMetrics.record(metrics, RenderMetrics.Stage.EXTRACT_RULES, start);
+    }
+
+    /**
+     * Obtain the rules from a SWRL rule engine instead of reading them from the ontology.
+     * The rule engine is only needed for inference, starting it is slow and needs a
+     * rule engine implementation (i.e., Drools) in the classpath.
+     * Must be set before the ontology is loaded.
+     * @param useRuleEngine True to load the rules with the SWRL rule engine
+     */
+    public void setUseRuleEngine(boolean useRuleEngine) {
+        this.useRuleEngine = useRuleEngine;
+    }
+
+    private IRIResolver createIRIResolver() {
+        IRIResolver iriResolver = SWRLAPIFactory.createIRIResolver(prefixManager.getDefaultPrefix());
+        loadPrefixes(iriResolver);
+        return iriResolver;
+    }
+
+    /**
+     * @brief Read the SWRL rules of the ontology
+     * @details The rule axioms and their rdfs:label / rdfs:comment annotations are read
+     *          directly from the ontology, without starting a rule engine.
+     * @return SWRL rules of the ontology
+     */
+    private Set<SWRLAPIRule> loadRules() {
+        if (useRuleEngine) {
+            return getSWRLRuleEngine().getSWRLRules();
+        }
+        try {
+            return SWRLAPIInternalFactory.createSWRLAPIOntology(ontology, iriResolver).getSWRLRules();
+        } catch (SWRLBuiltInException e) {
+            throw new SWRLAPIException("Could not read the SWRL rules: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Set the language preference of the rdfs:labels shown for the rule predicates.
+     * Must be set before the ontology is loaded.
+     * @param labelLanguages Preferred languages, "" for labels without language tag
+     */
+    public void setLabelLanguages(List<String> labelLanguages) {
+        this.labelLanguages = new ArrayList<>(labelLanguages);
+    }
+
+    /**
+     * Build the label index of the imports closure in parallel.
+     * Must be set before the ontology is loaded.
+     * @param parallelLabelIndex True to index the ontologies in parallel
+     */
+    public void setParallelLabelIndex(boolean parallelLabelIndex) {
+        this.parallelLabelIndex = parallelLabelIndex;
+    }
 
+    /**
+     * Record the time spent loading the ontology, building the label index and reading the rules
+     * @param metrics Metrics registry, null to record nothing
+     */
+    public void setMetrics(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Persist the ontologies found in the import directories, later loads only
+     * scan the files that changed
+     * @param importIndexDirectory Directory of the import indexes, null to scan all files on every load
+     */
+    public void setImportIndexDirectory(File importIndexDirectory) {
+        this.importIndexDirectory = importIndexDirectory;
+    }
+
+    /**
+     * @return Label index of the loaded ontology and its imports
+     */
+    public OntologyLabelIndex getLabelIndex() {
+        return labelIndex;
     }
 
     public OWLOntology getOntology() {
@@ -97,18 +208,22 @@ public class OWLUtil {
     }
 
     public SWRLRuleEngine getSWRLRuleEngine() {
-        IRIResolver iriResolver = SWRLAPIFactory.createIRIResolver(prefixManager.getDefaultPrefix());
-        loadPrefixes(iriResolver);
         SWRLRuleEngine ruleEngine = SWRLAPIFactory.createSWRLRuleEngine(ontology, iriResolver);
         return ruleEngine;
     }
 
     public SWRLRuleRenderer getRuleRenderer() {
-        IRIResolver iriResolver = SWRLAPIFactory.createIRIResolver(prefixManager.getDefaultPrefix());
         SWRLRuleRenderer swrlRuleRenderer = SWRLAPIInternalFactory.createSWRLRuleRenderer(ontology, iriResolver);
         return swrlRuleRenderer;
     }
 
+    /**
+     * @return Immutable render context of the loaded ontology
+     */
+    public RenderContext getRenderContext() {
+        return new RenderContext(ontology, prefixManager, labelIndex, getAllRules(), getRuleRenderer());
+    }
+
     public ArrayList<SWRLAPIRule> getAllRules() {
         return new ArrayList<SWRLAPIRule>(allRules);
     }
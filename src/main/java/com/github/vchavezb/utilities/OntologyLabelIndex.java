@@ -0,0 +1,119 @@
+package com.github.vchavezb.utilities;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of the rdfs:label of every IRI of an ontology and its imports closure.
+ * The index is built once per loaded ontology, afterwards every label lookup is a
+ * single hash lookup. The index is immutable and can be shared between threads.
+ *
+ * For each ontology the label is chosen by the language preference chain: the first
+ * language of the chain that has a label wins, if none matches any label of the entity
+ * is used. The labels of the ontology itself take precedence over the labels of its imports.
+ */
+public class OntologyLabelIndex {
+
+    /**
+     * Default language preference: english, then labels without language tag
+     */
+    public static final List<String> DEFAULT_LANGUAGES = Collections.unmodifiableList(Arrays.asList("en", ""));
+
+    private final Map<IRI, String> labels;
+
+    private OntologyLabelIndex(Map<IRI, String> labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Build the label index of an ontology and its imports
+     * @param ontology Ontology to index
+     * @param languages Language preference chain, "" for labels without language tag
+     * @param parallel Index the ontologies of the imports closure in parallel
+     * @return Label index
+     */
+    public static OntologyLabelIndex build(OWLOntology ontology, List<String> languages, boolean parallel) {
+        List<OWLOntology> ontologies = new ArrayList<>();
+        ontologies.add(ontology);
+        for (OWLOntology imported : ontology.getImports()) {
+            if (!imported.equals(ontology)) {
+                ontologies.add(imported);
+            }
+        }
+        Stream<OWLOntology> stream = parallel ? ontologies.parallelStream() : ontologies.stream();
+        // Collecting keeps the ontology order also for parallel streams
+        List<Map<IRI, RankedLabel>> indexes = stream
+                .map(o -> indexOntology(o, languages))
+                .collect(Collectors.toList());
+        Map<IRI, String> labels = new HashMap<>();
+        for (Map<IRI, RankedLabel> index : indexes) {
+            for (Map.Entry<IRI, RankedLabel> entry : index.entrySet()) {
+                // Only entities used by the ontology itself are shown in its rules
+                if (ontology.containsEntityInSignature(entry.getKey())) {
+                    labels.putIfAbsent(entry.getKey(), entry.getValue().label);
+                }
+            }
+        }
+        return new OntologyLabelIndex(labels);
+    }
+
+    /**
+     * Build the label index of an ontology and its imports with the default language preference
+     * @param ontology Ontology to index
+     * @return Label index
+     */
+    public static OntologyLabelIndex build(OWLOntology ontology) {
+        return build(ontology, DEFAULT_LANGUAGES, false);
+    }
+
+    private static Map<IRI, RankedLabel> indexOntology(OWLOntology ontology, List<String> languages) {
+        Map<IRI, RankedLabel> index = new HashMap<>();
+        for (OWLAnnotationAssertionAxiom axiom : ontology.getAxioms(AxiomType.ANNOTATION_ASSERTION)) {
+            if (!axiom.getProperty().isLabel() || !(axiom.getSubject() instanceof IRI)) {
+                continue;
+            }
+            com.google.common.base.Optional<OWLLiteral> literal = axiom.getValue().asLiteral();
+            if (!literal.isPresent()) {
+                continue;
+            }
+            int rank = languages.indexOf(literal.get().getLang());
+            if (rank < 0) {
+                rank = languages.size();
+            }
+            IRI subject = (IRI) axiom.getSubject();
+            RankedLabel current = index.get(subject);
+            if (current == null || rank < current.rank) {
+                index.put(subject, new RankedLabel(literal.get().getLiteral(), rank));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param iri IRI of an entity
+     * @return The preferred rdfs:label of the entity, null if it has no label
+     */
+    public String getLabel(IRI iri) {
+        return labels.get(iri);
+    }
+
+    /**
+     * @return Number of labeled IRIs
+     */
+    public int size() {
+        return labels.size();
+    }
+
+    private static class RankedLabel {
+        final String label;
+        final int rank;
+
+        RankedLabel(String label, int rank) {
+            this.label = label;
+            this.rank = rank;
+        }
+    }
+}
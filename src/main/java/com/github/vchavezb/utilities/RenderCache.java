@@ -0,0 +1,295 @@
+package com.github.vchavezb.utilities;
+
+import com.github.vchavezb.model.GraphListsForViz;
+import com.github.vchavezb.model.NodeConnection;
+import com.github.vchavezb.model.NodeInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent content-addressed cache of rendered images.
+ * Entries are keyed by a hash of the graph produced by {@link AOWLNEngine#megaAlgorithmus}
+ * and the render settings, so a rule fragment that did not change between runs is copied
+ * from the cache instead of being rendered again. The cache is bounded in size, the least
+ * recently used entries are evicted first. The last access of an entry is kept as the
+ * modification time of its file so the eviction order survives between runs.
+ */
+public class RenderCache {
+
+    private static final String ENTRY_EXTENSION = ".svg";
+    private static final String TMP_EXTENSION = ".tmp";
+    // Age after which a temporary file is taken as left over from an interrupted run,
+    // younger ones may belong to a store of another process sharing the directory
+    private static final long STALE_TMP_MILLIS = 10 * 60 * 1000;
+    private static final long PROCESS_ID = ProcessHandle.current().pid();
+    private static final String KEY_VERSION = "aowln-render-cache-2";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Path directory;
+    private final long maxBytes;
+    // Entry key -> size in bytes, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Open a cache directory, creating it if needed
+     * @param directory Directory of the cache entries
+     * @param maxBytes Maximum size of all entries in bytes
+     * @throws IOException If the directory cannot be created or read
+     */
+    public RenderCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        loadEntries();
+    }
+
+    private void loadEntries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        long staleBefore = System.currentTimeMillis() - STALE_TMP_MILLIS;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP_EXTENSION)) {
+                    try {
+                        if (Files.getLastModifiedTime(file).toMillis() < staleBefore) {
+                            // Left over from an interrupted run
+                            Files.deleteIfExists(file);
+                        }
+                    } catch (NoSuchFileException e) {
+                        // Moved into place by another process meanwhile
+                    }
+                } else if (name.endsWith(ENTRY_EXTENSION)) {
+                    files.add(file);
+                }
+            }
+        }
+        // Entries evicted meanwhile by another process sharing the directory are skipped
+        Map<Path, FileTime> modified = new LinkedHashMap<>();
+        Map<Path, Long> sizes = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                modified.put(file, attributes.lastModifiedTime());
+                sizes.put(file, attributes.size());
+            } catch (NoSuchFileException e) {
+                // evicted
+            }
+        }
+        files = new ArrayList<>(modified.keySet());
+        files.sort(Comparator.comparing(modified::get));
+        synchronized (this) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long size = sizes.get(file);
+                entries.put(name.substring(0, name.length() - ENTRY_EXTENSION.length()), size);
+                totalBytes += size;
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Compute the cache key of a graph. Nodes and connections are hashed in list order,
+     * the layout depends on the order in which they are added to the graphviz graph.
+     * The deterministic mode keeps that order stable between runs.
+     * @param graph Graph of a rule fragment
+     * @param renderSettings Settings that change the rendered image
+     * @return Hex encoded SHA-256 key
+     */
+    public static String key(GraphListsForViz graph, String renderSettings) {
+        List<String> nodes = new ArrayList<>();
+        for (NodeInfo node : graph.getNodes()) {
+            nodes.add(node.getInfo() + '\0' + node.getCaption() + '\0' + node.getType());
+        }
+        List<String> connections = new ArrayList<>();
+        for (NodeConnection connection : graph.getConnections()) {
+            if (connection == null) {
+                // Keep the number of skipped connections, it changes the rendered graph
+                connections.add("");
+                continue;
+            }
+            connections.add(nodeId(connection.getParent()) + '\0' + nodeId(connection.getChild()) + '\0'
+                    + connection.getType() + '\0' + connection.getLabel());
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, KEY_VERSION);
+        update(digest, renderSettings);
+        update(digest, "nodes");
+        for (String node : nodes) {
+            update(digest, node);
+        }
+        update(digest, "connections");
+        for (String connection : connections) {
+            update(digest, connection);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Compute the key of a graph without render settings. Used to compare graphs rendered
+     * by the same process, the render engine does not need to be probed.
+     * @param graph Graph of a rule fragment
+     * @return Hex encoded SHA-256 key
+     */
+    public static String graphKey(GraphListsForViz graph) {
+        return key(graph, "");
+    }
+
+    private static String nodeId(NodeInfo node) {
+        return node == null ? "" : node.getInfo();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    /**
+     * Read a cached image
+     * @param key Cache key
+     * @return Content of the image, null if the entry is not in the cache
+     */
+    public byte[] fetch(String key) {
+        Path entry = entryPath(key);
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        byte[] result;
+        try {
+            result = Files.readAllBytes(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // Evicted meanwhile
+            synchronized (this) {
+                remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            logger.warn("Could not read cache entry {}: {}", entry, e.toString());
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Store a rendered image in the cache
+     * @param key Cache key
+     * @param image Content of the rendered image
+     */
+    public void store(String key, byte[] image) {
+        Path entry = entryPath(key);
+        // Unique per process and thread, other processes may share the directory
+        Path tmp = directory.resolve(key + "." + PROCESS_ID + "." + Thread.currentThread().getId() + TMP_EXTENSION);
+        long size;
+        try {
+            Files.write(tmp, image);
+            size = Files.size(tmp);
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not store cache entry {}: {}", entry, e.toString());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // nothing else to clean up
+            }
+            return;
+        }
+        synchronized (this) {
+            Long previous = entries.put(key, size);
+            if (previous != null) {
+                totalBytes -= previous;
+            }
+            totalBytes += size;
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            try {
+                Files.deleteIfExists(entryPath(eldest.getKey()));
+            } catch (IOException e) {
+                logger.warn("Could not evict cache entry {}: {}", eldest.getKey(), e.toString());
+            }
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ENTRY_EXTENSION);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.vchavezb.utilities;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.PrefixManager;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.swrlapi.core.SWRLAPIRule;
+import org.swrlapi.core.SWRLRuleRenderer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable state of a loaded ontology needed to render its rules:
+ * the ontology, its prefixes (including the swrl builtin prefixes), its label index and its rules.
+ * A context is never modified after it is created, so one context can be shared by
+ * any number of threads rendering rules of the same ontology.
+ */
+public class RenderContext {
+    static final String SWRLX_IRI = "http://swrl.stanford.edu/ontologies/built-ins/3.3/swrlx.owl#";
+    static final String SQWRL_IRI = "http://sqwrl.stanford.edu/ontologies/built-ins/3.4/sqwrl.owl#";
+    static final String SWRLB_IRI = "http://www.w3.org/2003/11/swrlb#";
+    static final String SWRL_IRI = "http://www.w3.org/2003/11/swrl#";
+
+    private final OWLOntology ontology;
+    // Private copy, only read after construction
+    private final DefaultPrefixManager prefixManager;
+    private final OntologyLabelIndex labelIndex;
+    private final List<SWRLAPIRule> rules;
+    private final SWRLRuleRenderer ruleRenderer;
+    private final boolean deterministic;
+
+    /**
+     * Create a context in deterministic mode
+     * @param ontology Loaded ontology
+     * @param prefixes Prefixes of the ontology document, they are copied
+     * @param labelIndex Label index of the ontology, null to build it with the default languages
+     * @param rules SWRL rules of the ontology
+     * @param ruleRenderer Renderer of the rules as text, may be null
+     */
+    public RenderContext(OWLOntology ontology, PrefixManager prefixes, OntologyLabelIndex labelIndex,
+                         List<SWRLAPIRule> rules, SWRLRuleRenderer ruleRenderer) {
+        this(ontology, prefixes, labelIndex, rules, ruleRenderer, true);
+    }
+
+    /**
+     * @param ontology Loaded ontology
+     * @param prefixes Prefixes of the ontology document, they are copied
+     * @param labelIndex Label index of the ontology, null to build it with the default languages
+     * @param rules SWRL rules of the ontology
+     * @param ruleRenderer Renderer of the rules as text, may be null
+     * @param deterministic True to render identical rules into byte-identical images
+     */
+    public RenderContext(OWLOntology ontology, PrefixManager prefixes, OntologyLabelIndex labelIndex,
+                         List<SWRLAPIRule> rules, SWRLRuleRenderer ruleRenderer, boolean deterministic) {
+        this.ontology = ontology;
+        this.prefixManager = new DefaultPrefixManager();
+        if (prefixes != null) {
+            for (Map.Entry<String, String> entry : prefixes.getPrefixName2PrefixMap().entrySet()) {
+                prefixManager.setPrefix(entry.getKey(), entry.getValue());
+            }
+        }
+        // Add swrl builtin prefixes
+        prefixManager.setPrefix("swrlx:", SWRLX_IRI);
+        prefixManager.setPrefix("swrlb:", SWRLB_IRI);
+        prefixManager.setPrefix("sqwrl:", SQWRL_IRI);
+        prefixManager.setPrefix("swrl:", SWRL_IRI);
+        this.labelIndex = labelIndex != null ? labelIndex : OntologyLabelIndex.build(ontology);
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.ruleRenderer = ruleRenderer;
+        this.deterministic = deterministic;
+    }
+
+    public OWLOntology getOntology() {
+        return ontology;
+    }
+
+    public OntologyLabelIndex getLabelIndex() {
+        return labelIndex;
+    }
+
+    /**
+     * @return Unmodifiable list of the SWRL rules of the ontology
+     */
+    public List<SWRLAPIRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @param ruleName Name of a rule
+     * @return The rule with the given name, null if not found
+     */
+    public SWRLAPIRule getRule(String ruleName) {
+        for (SWRLAPIRule rule : rules) {
+            if (rule.getRuleName().equals(ruleName)) return rule;
+        }
+        return null;
+    }
+
+    public SWRLRuleRenderer getRuleRenderer() {
+        return ruleRenderer;
+    }
+
+    /**
+     * @return True if the rules are rendered in deterministic mode, see {@link AOWLNEngine}
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * @param deterministic True for the deterministic mode
+     * @return Context of the same ontology with the given rendering mode, this context if the mode is the same
+     */
+    public RenderContext withDeterministic(boolean deterministic) {
+        if (deterministic == this.deterministic) {
+            return this;
+        }
+        return new RenderContext(ontology, prefixManager, labelIndex, rules, ruleRenderer, deterministic);
+    }
+
+    /**
+     * @return Unmodifiable map of prefix name to prefix
+     */
+    public Map<String, String> getPrefixes() {
+        return Collections.unmodifiableMap(prefixManager.getPrefixName2PrefixMap());
+    }
+
+    /**
+     * @param iri IRI to shorten
+     * @return Prefixed name of the IRI, null if no prefix matches
+     */
+    public String getPrefixIRI(IRI iri) {
+        return prefixManager.getPrefixIRI(iri);
+    }
+}
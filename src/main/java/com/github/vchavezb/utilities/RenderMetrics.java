@@ -0,0 +1,477 @@
+package com.github.vchavezb.utilities;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the time spent in each stage of the render pipeline.
+ * Up to {@value #MAX_SAMPLES} durations are kept per stage, so the percentiles are exact for
+ * batch runs; beyond that a uniform sample of the durations is kept. The stages of the rule
+ * that is rendered by a thread (between {@link #startRule()} and {@link #endRule}) are also
+ * summed per rule to report the slowest rules. Safe to use from any number of threads.
+ */
+public class RenderMetrics implements RenderMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.github.vchavezb:type=RenderMetrics";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    static final int MAX_SAMPLES = 1 << 20;
+    // Metrics registered as MBean, guarded by the class
+    private static RenderMetrics registered;
+
+    /**
+     * Stages of the render pipeline
+     */
+    public enum Stage {
+        /** Parsing of the ontology document and its imports */
+        LOAD_ONTOLOGY,
+        /** Creation of the label index */
+        LABEL_INDEX,
+        /** Reading of the SWRL rules */
+        EXTRACT_RULES,
+        /** createSWRLAtomsForTree of the body and the head */
+        CREATE_ATOMS,
+        /** Creation of the default concepts of variables without class */
+        INJECT_CONCEPTS,
+        /** megaAlgorithmus of the body and the head */
+        MEGA_ALGORITHMUS,
+        /** Creation of the graphviz graph and its layout */
+        LAYOUT,
+        /** Writing of a rendered image */
+        WRITE,
+        /** Copying of an image from the render cache */
+        CACHE_FETCH
+    }
+
+    /**
+     * Durations of one stage
+     */
+    private static class StageTimer {
+        private long[] samples = new long[64];
+        private int sampleCount;
+        private long count;
+        private long total;
+        private long max;
+
+        synchronized void add(long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+            if (sampleCount < MAX_SAMPLES) {
+                if (sampleCount == samples.length) {
+                    samples = Arrays.copyOf(samples, sampleCount * 2);
+                }
+                samples[sampleCount++] = nanos;
+            } else {
+                // Reservoir sampling, every duration is kept with the same probability
+                long index = ThreadLocalRandom.current().nextLong(count);
+                if (index < MAX_SAMPLES) {
+                    samples[(int) index] = nanos;
+                }
+            }
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long getTotal() {
+            return total;
+        }
+
+        synchronized long percentile(int percentile) {
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            return percentile(sorted, percentile);
+        }
+
+        synchronized StageSummary summary(Stage stage) {
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            return new StageSummary(stage, count, total, max,
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99));
+        }
+
+        synchronized void reset() {
+            samples = new long[64];
+            sampleCount = 0;
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+
+        /**
+         * @return Nearest-rank percentile of sorted samples, 0 if there are none
+         */
+        private static long percentile(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+    }
+
+    /**
+     * Statistics of one stage, durations in nanoseconds
+     */
+    public static class StageSummary {
+        final Stage stage;
+        final long count;
+        final long total;
+        final long max;
+        final long p50;
+        final long p90;
+        final long p99;
+
+        StageSummary(Stage stage, long count, long total, long max, long p50, long p90, long p99) {
+            this.stage = stage;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return total;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        public long getP50Nanos() {
+            return p50;
+        }
+
+        public long getP90Nanos() {
+            return p90;
+        }
+
+        public long getP99Nanos() {
+            return p99;
+        }
+    }
+
+    /**
+     * Time spent on a rendered rule, durations in nanoseconds
+     */
+    public static class RuleTiming {
+        final String ruleName;
+        final String imageName;
+        final long total;
+        final long[] stages;
+
+        RuleTiming(String ruleName, String imageName, long total, long[] stages) {
+            this.ruleName = ruleName;
+            this.imageName = imageName;
+            this.total = total;
+            this.stages = stages;
+        }
+
+        public String getRuleName() {
+            return ruleName;
+        }
+
+        public String getImageName() {
+            return imageName;
+        }
+
+        public long getTotalNanos() {
+            return total;
+        }
+
+        /**
+         * @param stage Stage of the pipeline
+         * @return Time spent on the stage for this rule
+         */
+        public long getStageNanos(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+    }
+
+    private final Map<Stage, StageTimer> timers = new EnumMap<>(Stage.class);
+    private final AtomicLong rulesRendered = new AtomicLong();
+    private final AtomicLong rulesFailed = new AtomicLong();
+    private final int slowestRuleCount;
+    // Slowest rules, the fastest of them at the head
+    private final PriorityQueue<RuleTiming> slowestRules =
+            new PriorityQueue<>(Comparator.comparingLong(RuleTiming::getTotalNanos));
+    // Stage durations of the rule rendered by the current thread
+    private final ThreadLocal<long[]> currentRule = new ThreadLocal<>();
+
+    public RenderMetrics() {
+        this(10);
+    }
+
+    /**
+     * @param slowestRuleCount Number of slowest rules kept for the report
+     */
+    public RenderMetrics(int slowestRuleCount) {
+        this.slowestRuleCount = slowestRuleCount;
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, new StageTimer());
+        }
+    }
+
+    /**
+     * Record the duration of a stage
+     * @param stage Stage of the pipeline
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        timers.get(stage).add(nanos);
+        long[] rule = currentRule.get();
+        if (rule != null) {
+            rule[stage.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Record the duration of a stage that started at {@code startNanos}
+     * @param metrics Metrics registry, null to record nothing
+     * @param stage Stage of the pipeline
+     * @param startNanos Value of System.nanoTime() at the start of the stage
+     * @return Value of System.nanoTime() at the end of the stage, the start of the next stage
+     */
+    public static long record(RenderMetrics metrics, Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        if (metrics != null) {
+            metrics.record(stage, now - startNanos);
+        }
+        return now;
+    }
+
+    /**
+     * Start to sum the stages recorded by the current thread for a rule
+     */
+    public void startRule() {
+        currentRule.set(new long[Stage.values().length]);
+    }
+
+    /**
+     * Finish the rule started by the current thread with {@link #startRule()}
+     * @param ruleName Name of the rule
+     * @param imageName Base image name of the rule
+     * @param totalNanos Time spent on the rule
+     * @param success False if the rule could not be rendered
+     */
+    public void endRule(String ruleName, String imageName, long totalNanos, boolean success) {
+        long[] stages = currentRule.get();
+        currentRule.remove();
+        (success ? rulesRendered : rulesFailed).incrementAndGet();
+        if (stages == null || slowestRuleCount == 0) {
+            return;
+        }
+        synchronized (slowestRules) {
+            if (slowestRules.size() < slowestRuleCount) {
+                slowestRules.add(new RuleTiming(ruleName, imageName, totalNanos, stages));
+            } else if (slowestRules.peek().total < totalNanos) {
+                slowestRules.poll();
+                slowestRules.add(new RuleTiming(ruleName, imageName, totalNanos, stages));
+            }
+        }
+    }
+
+    /**
+     * @param stage Stage of the pipeline
+     * @return Statistics of the stage
+     */
+    public StageSummary getSummary(Stage stage) {
+        return timers.get(stage).summary(stage);
+    }
+
+    /**
+     * @return Slowest rendered rules, slowest first
+     */
+    public List<RuleTiming> getSlowestRules() {
+        List<RuleTiming> rules;
+        synchronized (slowestRules) {
+            rules = new ArrayList<>(slowestRules);
+        }
+        rules.sort(Comparator.comparingLong(RuleTiming::getTotalNanos).reversed());
+        return rules;
+    }
+
+    @Override
+    public long getRulesRendered() {
+        return rulesRendered.get();
+    }
+
+    @Override
+    public long getRulesFailed() {
+        return rulesFailed.get();
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            counts.put(stage.name(), timers.get(stage).getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getStageTotalMillis() {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            totals.put(stage.name(), timers.get(stage).getTotal() / NANOS_PER_MILLI);
+        }
+        return totals;
+    }
+
+    @Override
+    public Map<String, Double> getStageP99Millis() {
+        Map<String, Double> p99 = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            // Only the percentile needs the samples sorted
+            p99.put(stage.name(), timers.get(stage).percentile(99) / NANOS_PER_MILLI);
+        }
+        return p99;
+    }
+
+    @Override
+    public void reset() {
+        for (StageTimer timer : timers.values()) {
+            timer.reset();
+        }
+        rulesRendered.set(0);
+        rulesFailed.set(0);
+        synchronized (slowestRules) {
+            slowestRules.clear();
+        }
+    }
+
+    /**
+     * Register the metrics in the platform MBean server as {@value #OBJECT_NAME}.
+     * Metrics registered before, e.g. by a previous run in the same JVM, are replaced.
+     * @throws IllegalStateException If the MBean cannot be registered
+     */
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (RenderMetrics.class) {
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+                registered = this;
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not register the metrics MBean", e);
+            }
+        }
+    }
+
+    /**
+     * Remove the metrics from the platform MBean server. Does nothing if other metrics
+     * replaced them meanwhile.
+     */
+    public void unregisterMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (RenderMetrics.class) {
+            if (registered != this) {
+                return;
+            }
+            try {
+                server.unregisterMBean(new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // Unregistered by someone else
+            }
+            registered = null;
+        }
+    }
+
+    /**
+     * @return One line per stage with the number of calls, total and 99th percentile
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            StageSummary summary = getSummary(stage);
+            if (summary.count == 0) {
+                continue;
+            }
+            builder.append(String.format("%n  %-16s %8d calls %12.1f ms total %10.2f ms p99",
+                    stage, summary.count, summary.total / NANOS_PER_MILLI, summary.p99 / NANOS_PER_MILLI));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Write the metrics as a JSON report with the percentiles of every stage and the slowest rules.
+     * Durations are in milliseconds.
+     * @return JSON document
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"rulesRendered\": ").append(getRulesRendered())
+                .append(",\n  \"rulesFailed\": ").append(getRulesFailed())
+                .append(",\n  \"stages\": {");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            StageSummary summary = getSummary(stages[i]);
+            json.append(i == 0 ? "\n" : ",\n").append("    ").append(JsonUtil.quote(stages[i].name()))
+                    .append(": {\"count\": ").append(summary.count)
+                    .append(", \"totalMs\": ").append(millis(summary.total))
+                    .append(", \"meanMs\": ").append(millis(summary.getMeanNanos()))
+                    .append(", \"p50Ms\": ").append(millis(summary.p50))
+                    .append(", \"p90Ms\": ").append(millis(summary.p90))
+                    .append(", \"p99Ms\": ").append(millis(summary.p99))
+                    .append(", \"maxMs\": ").append(millis(summary.max)).append("}");
+        }
+        json.append("\n  },\n  \"slowestRules\": [");
+        List<RuleTiming> rules = getSlowestRules();
+        for (int i = 0; i < rules.size(); i++) {
+            RuleTiming rule = rules.get(i);
+            json.append(i == 0 ? "\n" : ",\n").append("    {\"name\": ").append(JsonUtil.quote(rule.ruleName))
+                    .append(", \"image\": ").append(JsonUtil.quote(rule.imageName))
+                    .append(", \"totalMs\": ").append(millis(rule.total))
+                    .append(", \"stagesMs\": {");
+            boolean first = true;
+            for (Stage stage : stages) {
+                if (rule.stages[stage.ordinal()] == 0) {
+                    continue;
+                }
+                json.append(first ? "" : ", ").append(JsonUtil.quote(stage.name())).append(": ")
+                        .append(millis(rule.stages[stage.ordinal()]));
+                first = false;
+            }
+            json.append("}}");
+        }
+        json.append(rules.isEmpty() ? "]" : "\n  ]").append("\n}\n");
+        return json.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.vchavezb.utilities;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link RenderMetrics}, maps are keyed by the stage name
+ */
+public interface RenderMetricsMXBean {
+
+    long getRulesRendered();
+
+    long getRulesFailed();
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageTotalMillis();
+
+    Map<String, Double> getStageP99Millis();
+
+    /**
+     * Discard all recorded durations and counters
+     */
+    void reset();
+}
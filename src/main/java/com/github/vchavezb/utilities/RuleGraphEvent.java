@@ -0,0 +1,37 @@
+package com.github.vchavezb.utilities;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of creating the AOWLN graphs of a rule
+ */
+@Name("com.github.vchavezb.RuleGraph")
+@Label("Rule Graph")
+@Category("AOWLN")
+@Description("Creation of the AOWLN atoms and graphs of the body and the head of a rule")
+public class RuleGraphEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    public String rule;
+
+    @Label("Body Atoms")
+    public int bodyAtoms;
+
+    @Label("Head Atoms")
+    public int headAtoms;
+
+    @Label("Body Nodes")
+    public int bodyNodes;
+
+    @Label("Body Edges")
+    public int bodyEdges;
+
+    @Label("Head Nodes")
+    public int headNodes;
+
+    @Label("Head Edges")
+    public int headEdges;
+}
@@ -0,0 +1,49 @@
+package com.github.vchavezb.utilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Destination of the rendered rule images. Images are written as soon as a rule
+ * is rendered, implementations must accept writes from several render threads.
+ */
+public interface RuleOutputSink extends Closeable {
+
+    /**
+     * Write a rendered image
+     * @param ruleName Name of the rule of the image, may be null
+     * @param name Name of the image, e.g. rule_1-body.svg
+     * @param content Content of the image
+     * @throws IOException If the image could not be written
+     */
+    void write(String ruleName, String name, byte[] content) throws IOException;
+
+    /**
+     * @param path Output path
+     * @return True if {@link #open} writes the path as an archive
+     */
+    static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * Open the sink for an output path. Paths ending with .zip, .tar, .tar.gz or .tgz
+     * are written as a single archive, any other path as a directory of images.
+     * @param path Output directory or archive file
+     * @return Sink writing to the path
+     * @throws IOException If the archive cannot be created
+     */
+    static RuleOutputSink open(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".zip")) {
+            return new ZipOutputSink(path);
+        } else if (name.endsWith(".tar")) {
+            return new TarOutputSink(path, false);
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return new TarOutputSink(path, true);
+        }
+        return new DirectoryOutputSink(path);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.vchavezb.utilities;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.function.Function;
+
+/**
+ * Extract the value shown for a SWRL argument directly from the OWLAPI objects.
+ * Variables and named individuals are shown by their IRI, shortened by the given function,
+ * literals by their lexical value. Atoms and rules have no argument value and return null.
+ */
+class SWRLArgumentValueVisitor implements SWRLObjectVisitorEx<String> {
+
+    private final Function<IRI, String> iriValue;
+
+    /**
+     * @param iriValue Function that returns the value shown for an IRI
+     */
+    SWRLArgumentValueVisitor(Function<IRI, String> iriValue) {
+        this.iriValue = iriValue;
+    }
+
+    @Override
+    public String visit(SWRLVariable node) {
+        return iriValue.apply(node.getIRI());
+    }
+
+    @Override
+    public String visit(SWRLIndividualArgument node) {
+        OWLIndividual individual = node.getIndividual();
+        if (individual.isNamed()) {
+            return iriValue.apply(individual.asOWLNamedIndividual().getIRI());
+        }
+        return individual.asOWLAnonymousIndividual().getID().getID();
+    }
+
+    @Override
+    public String visit(SWRLLiteralArgument node) {
+        return node.getLiteral().getLiteral();
+    }
+
+    @Override
+    public String visit(SWRLRule node) {
+        return null;
+    }
+
+    @Override
+    public String visit(SWRLClassAtom node) {
+        return null;
+    }
+
+    @Override
+    public String visit(SWRLDataRangeAtom node) {
+        return null;
+    }
+
+    @Override
+    public String visit(SWRLObjectPropertyAtom node) {
+        return null;
+    }
+
+    @Override
+    public String visit(SWRLDataPropertyAtom node) {
+        return null;
+    }
+
+    @Override
+    public String visit(SWRLBuiltInAtom node) {
+        return null;
+    }
+
+    @Override
+    public String visit(SWRLSameIndividualAtom node) {
+        return null;
+    }
+
+    @Override
+    public String visit(SWRLDifferentIndividualsAtom node) {
+        return null;
+    }
+}
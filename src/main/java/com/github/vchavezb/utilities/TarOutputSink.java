@@ -0,0 +1,121 @@
+package com.github.vchavezb.utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the rule images into a POSIX (ustar) tar archive, optionally gzip compressed.
+ * Entry names longer than the 100 bytes of the ustar header are stored in a pax extended header.
+ */
+public class TarOutputSink extends ArchiveOutputSink {
+
+    private static final int BLOCK = 512;
+    private static final int NAME_LENGTH = 100;
+
+    private final OutputStream out;
+    private final long time = System.currentTimeMillis() / 1000;
+
+    /**
+     * @param file Archive file, replaced if it exists
+     * @param gzip True to gzip compress the archive
+     * @throws IOException If the file cannot be created
+     */
+    public TarOutputSink(Path file, boolean gzip) throws IOException {
+        super(file);
+        OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+        this.out = gzip ? new GZIPOutputStream(stream, 1 << 16) : stream;
+    }
+
+    @Override
+    protected void writeEntry(String name, byte[] content) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean ascii = nameBytes.length == name.length();
+        if (nameBytes.length > NAME_LENGTH || !ascii) {
+            writeRecord("PaxHeaders/" + ascii(name), 'x', paxRecord("path", name));
+        }
+        writeRecord(ascii(name), '0', content);
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        try {
+            // End of archive: two zero blocks
+            out.write(new byte[2 * BLOCK]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeRecord(String name, char type, byte[] content) throws IOException {
+        byte[] header = new byte[BLOCK];
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, NAME_LENGTH));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, content.length);
+        octal(header, 136, 12, time);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        // The checksum is computed with its own field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        header[155] = ' ';
+        out.write(header);
+        out.write(content);
+        int padding = (BLOCK - content.length % BLOCK) % BLOCK;
+        if (padding > 0) {
+            out.write(new byte[padding]);
+        }
+    }
+
+    /**
+     * Write a zero padded, NUL terminated octal number into a header field
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = i - (width - digits.length());
+            header[offset + i] = (byte) (digit < 0 ? '0' : digits.charAt(digit));
+        }
+        header[offset + width] = 0;
+    }
+
+    /**
+     * @return A pax record "LENGTH key=value\n", where LENGTH counts the whole record
+     */
+    private static byte[] paxRecord(String key, String value) {
+        int payload = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = payload + String.valueOf(payload).length();
+        if (String.valueOf(length).length() != String.valueOf(payload).length()) {
+            length++;
+        }
+        return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The name with the characters outside of ASCII replaced, used in the ustar header
+     */
+    private static String ascii(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            builder.append(c < 0x80 ? c : '_');
+        }
+        return builder.toString();
+    }
+}
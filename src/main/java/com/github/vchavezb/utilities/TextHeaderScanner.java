@@ -0,0 +1,576 @@
+package com.github.vchavezb.utilities;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.vocab.Namespaces;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the ontology IRI and owl:versionIRI in the first bytes of Turtle, N-Triples and JSON-LD
+ * documents without parsing the whole document. Only the statements, or JSON objects, that are
+ * complete within the read window are considered.
+ */
+final class TextHeaderScanner {
+
+    private static final String RDF_TYPE = Namespaces.RDF + "type";
+    private static final String OWL_ONTOLOGY = Namespaces.OWL + "Ontology";
+    private static final String OWL_VERSION_IRI = Namespaces.OWL + "versionIRI";
+
+    private TextHeaderScanner() {}
+
+    /**
+     * Read the start of a file as UTF-8
+     * @param file the file to read
+     * @param maxBytes Number of bytes read at most
+     * @return Text of the window, a character cut at the end of the window is replaced.
+     *         A line break is appended when the whole file was read, so its last token is complete.
+     * @throws IOException If the file cannot be read
+     */
+    static String readHeader(Path file, int maxBytes) throws IOException {
+        ByteBuffer bytes;
+        boolean complete;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            complete = channel.size() <= maxBytes;
+            bytes = ByteBuffer.allocate((int) Math.min(channel.size(), maxBytes));
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // keep reading until the window is full or the file ends
+            }
+        }
+        bytes.flip();
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer text = decoder.decode(bytes);
+            return complete ? text + "\n" : text.toString();
+        } catch (CharacterCodingException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Ontology and version IRIs of the ontologies declared in a Turtle or N-Triples document.
+     * Scanning ends with the first statement that completes the header of an ontology, i.e. declares
+     * it or, if mapped, states its version IRI.
+     * @param text Start of the document
+     * @param mapVersionIRI Include the owl:versionIRI of the ontologies
+     * @return Ontology IRIs followed by their version IRI
+     */
+    static List<IRI> scanTurtle(String text, boolean mapVersionIRI) {
+        TurtleScanner scanner = new TurtleScanner(text, mapVersionIRI);
+        scanner.scan();
+        Set<IRI> found = new LinkedHashSet<>();
+        for (String ontology : scanner.ontologies) {
+            found.add(IRI.create(ontology));
+            String version = scanner.versions.get(ontology);
+            if (mapVersionIRI && version != null) {
+                found.add(IRI.create(version));
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Ontology and version IRIs of the ontologies declared in a JSON-LD document
+     * @param text Start of the document
+     * @param mapVersionIRI Include the owl:versionIRI of the ontologies
+     * @return Ontology IRIs followed by their version IRI
+     */
+    static List<IRI> scanJsonLd(String text, boolean mapVersionIRI) {
+        JsonScanner scanner = new JsonScanner(text);
+        try {
+            scanner.value();
+        } catch (IllegalStateException e) {
+            // End of the window or not JSON, use the objects completed until then
+        }
+        Set<IRI> found = new LinkedHashSet<>();
+        for (Map<String, Object> object : scanner.objects) {
+            boolean ontology = false;
+            for (Object type : asList(object.get("@type"))) {
+                if (type instanceof String && OWL_ONTOLOGY.equals(scanner.expand((String) type))) {
+                    ontology = true;
+                }
+            }
+            Object id = object.get("@id");
+            if (!ontology || !(id instanceof String)) {
+                continue;
+            }
+            found.add(IRI.create(scanner.expand((String) id)));
+            if (!mapVersionIRI) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : object.entrySet()) {
+                if (!OWL_VERSION_IRI.equals(scanner.expand(entry.getKey()))) {
+                    continue;
+                }
+                for (Object version : asList(entry.getValue())) {
+                    Object versionId = version instanceof Map ? ((Map<?, ?>) version).get("@id") : version;
+                    if (versionId instanceof String) {
+                        found.add(IRI.create(scanner.expand((String) versionId)));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    private static List<?> asList(Object value) {
+        if (value instanceof List) {
+            return (List<?>) value;
+        }
+        List<Object> list = new ArrayList<>();
+        if (value != null) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * Statement level scanner of Turtle, only keeps the terms needed to find the ontology header
+     */
+    private static class TurtleScanner {
+        final List<String> ontologies = new ArrayList<>();
+        final Map<String, String> versions = new HashMap<>();
+        private final String text;
+        private final boolean mapVersionIRI;
+        private final Map<String, String> prefixes = new HashMap<>();
+        private String base;
+        private int pos = 0;
+
+        TurtleScanner(String text, boolean mapVersionIRI) {
+            this.text = text;
+            this.mapVersionIRI = mapVersionIRI;
+        }
+
+        private enum State { SUBJECT, PREDICATE, OBJECT, AFTER_OBJECT }
+
+        void scan() {
+            State state = State.SUBJECT;
+            String subject = null;
+            String predicate = null;
+            // Nesting of blank node property lists and collections, their content is skipped
+            int depth = 0;
+            boolean blankSubject = false;
+            String token;
+            while ((token = next()) != null) {
+                if (depth == 0 && state == State.SUBJECT && isDirective(token)) {
+                    if (!directive(token)) {
+                        return;
+                    }
+                    continue;
+                }
+                switch (token) {
+                    case "[":
+                    case "(":
+                        if (depth == 0) {
+                            blankSubject = state == State.SUBJECT;
+                        }
+                        depth++;
+                        continue;
+                    case "]":
+                    case ")":
+                        depth--;
+                        if (depth == 0) {
+                            state = blankSubject ? State.PREDICATE : State.AFTER_OBJECT;
+                            if (blankSubject) {
+                                subject = null;
+                            }
+                        }
+                        continue;
+                    default:
+                        break;
+                }
+                if (depth > 0) {
+                    continue;
+                }
+                if (token.equals(".")) {
+                    if (!ontologies.isEmpty() && (!mapVersionIRI || versions.containsKey(ontologies.get(0)))) {
+                        // End of the ontology header
+                        return;
+                    }
+                    state = State.SUBJECT;
+                } else if (token.equals(";")) {
+                    state = State.PREDICATE;
+                } else if (token.equals(",")) {
+                    state = State.OBJECT;
+                } else if (token.startsWith("^^") || token.startsWith("@")) {
+                    // Datatype or language of the previous literal
+                    continue;
+                } else if (state == State.SUBJECT) {
+                    subject = term(token);
+                    state = State.PREDICATE;
+                } else if (state == State.PREDICATE) {
+                    predicate = token.equals("a") ? RDF_TYPE : term(token);
+                    state = State.OBJECT;
+                } else if (state == State.OBJECT) {
+                    statement(subject, predicate, term(token));
+                    state = State.AFTER_OBJECT;
+                } else {
+                    // Not Turtle that can be followed
+                    return;
+                }
+            }
+        }
+
+        private void statement(String subject, String predicate, String object) {
+            if (subject == null || predicate == null || object == null) {
+                return;
+            }
+            if (predicate.equals(RDF_TYPE) && object.equals(OWL_ONTOLOGY) && !ontologies.contains(subject)) {
+                ontologies.add(subject);
+            } else if (predicate.equals(OWL_VERSION_IRI)) {
+                versions.putIfAbsent(subject, object);
+            }
+        }
+
+        private static boolean isDirective(String token) {
+            return token.equals("@prefix") || token.equals("@base")
+                    || token.equalsIgnoreCase("PREFIX") || token.equalsIgnoreCase("BASE");
+        }
+
+        /**
+         * @return False if the directive is incomplete
+         */
+        private boolean directive(String keyword) {
+            if (keyword.equals("@prefix") || keyword.equalsIgnoreCase("PREFIX")) {
+                String name = next();
+                String iri = next();
+                if (name == null || iri == null || !name.endsWith(":") || !iri.startsWith("<")) {
+                    return false;
+                }
+                prefixes.put(name.substring(0, name.length() - 1), resolve(iri.substring(1, iri.length() - 1)));
+            } else {
+                String iri = next();
+                if (iri == null || !iri.startsWith("<")) {
+                    return false;
+                }
+                base = resolve(iri.substring(1, iri.length() - 1));
+            }
+            if (keyword.startsWith("@")) {
+                return ".".equals(next());
+            }
+            return true;
+        }
+
+        /**
+         * @return IRI of a term, null for literals and blank nodes
+         */
+        private String term(String token) {
+            if (token.startsWith("<")) {
+                return resolve(token.substring(1, token.length() - 1));
+            }
+            if (token.startsWith("\"") || token.startsWith("'") || token.startsWith("_:")) {
+                return null;
+            }
+            int colon = token.indexOf(':');
+            if (colon < 0) {
+                return null;
+            }
+            String namespace = prefixes.get(token.substring(0, colon));
+            return namespace == null ? null : namespace + token.substring(colon + 1).replace("\\", "");
+        }
+
+        private String resolve(String iri) {
+            if (base == null) {
+                return iri;
+            }
+            // URI.resolve mishandles same-document references (RFC 3986 5.2.2), <> is the base itself
+            if (iri.isEmpty() || iri.startsWith("#")) {
+                int fragment = base.indexOf('#');
+                return (fragment < 0 ? base : base.substring(0, fragment)) + iri;
+            }
+            try {
+                return new URI(base).resolve(new URI(iri)).toString();
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return iri;
+            }
+        }
+
+        /**
+         * @return Next token, null at the end of the text or at a token cut by the end of the window
+         */
+        private String next() {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '#') {
+                    int end = text.indexOf('\n', pos);
+                    if (end < 0) {
+                        return null;
+                    }
+                    pos = end + 1;
+                } else {
+                    break;
+                }
+            }
+            if (pos >= text.length()) {
+                return null;
+            }
+            int start = pos;
+            char c = text.charAt(pos);
+            if (c == '<') {
+                int end = text.indexOf('>', pos);
+                if (end < 0) {
+                    return null;
+                }
+                pos = end + 1;
+            } else if (c == '"' || c == '\'') {
+                String quote = text.startsWith(String.valueOf(c).repeat(3), pos) ? String.valueOf(c).repeat(3)
+                        : String.valueOf(c);
+                int i = pos + quote.length();
+                while (true) {
+                    if (i >= text.length()) {
+                        return null;
+                    }
+                    if (text.charAt(i) == '\\') {
+                        i += 2;
+                    } else if (text.startsWith(quote, i)) {
+                        break;
+                    } else {
+                        i++;
+                    }
+                }
+                pos = i + quote.length();
+            } else if ("[]();,".indexOf(c) >= 0) {
+                pos++;
+            } else if (c == '^' && text.startsWith("^^", pos)) {
+                pos += 2;
+                String datatype = next();
+                return datatype == null ? null : "^^" + datatype;
+            } else {
+                while (pos < text.length()) {
+                    char t = text.charAt(pos);
+                    if (Character.isWhitespace(t) || "<>\"[](),;#".indexOf(t) >= 0) {
+                        break;
+                    }
+                    if (t == '\\') {
+                        pos++;
+                    }
+                    pos++;
+                }
+                if (pos >= text.length()) {
+                    // Cut by the end of the window
+                    return null;
+                }
+                // A dot ends the statement unless it is inside a name
+                if (pos - start > 1 && text.charAt(pos - 1) == '.') {
+                    pos--;
+                }
+            }
+            return text.substring(start, pos);
+        }
+    }
+
+    /**
+     * Minimal JSON reader that records every completed object and the JSON-LD context
+     */
+    private static class JsonScanner {
+        final List<Map<String, Object>> objects = new ArrayList<>();
+        private final Map<String, String> context = new HashMap<>();
+        private final String text;
+        private int pos = 0;
+
+        JsonScanner(String text) {
+            this.text = text;
+        }
+
+        String expand(String term) {
+            if (term.startsWith("@")) {
+                return term;
+            }
+            String mapped = context.get(term);
+            if (mapped != null) {
+                return mapped;
+            }
+            int colon = term.indexOf(':');
+            if (colon > 0 && !term.startsWith("//", colon + 1)) {
+                String namespace = context.get(term.substring(0, colon));
+                if (namespace != null) {
+                    return namespace + term.substring(colon + 1);
+                }
+            } else if (colon < 0 && context.containsKey("@vocab")) {
+                return context.get("@vocab") + term;
+            }
+            return term;
+        }
+
+        Object value() {
+            skipWhitespace();
+            char c = peek();
+            if (c == '{') {
+                return object();
+            } else if (c == '[') {
+                return array();
+            } else if (c == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (pos == start) {
+                throw new IllegalStateException("Unexpected " + c);
+            }
+            return null;
+        }
+
+        private Map<String, Object> object() {
+            pos++;
+            Map<String, Object> object = new LinkedHashMap<>();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                Object value = value();
+                object.put(key, value);
+                if (key.equals("@context")) {
+                    // Register the context at once, the rest of the document may be cut
+                    addContext(value);
+                }
+                skipWhitespace();
+                char c = peek();
+                pos++;
+                if (c == '}') {
+                    break;
+                } else if (c != ',') {
+                    throw new IllegalStateException("Unexpected " + c);
+                }
+            }
+            objects.add(object);
+            return object;
+        }
+
+        private void addContext(Object value) {
+            if (value instanceof List) {
+                for (Object item : (List<?>) value) {
+                    addContext(item);
+                }
+            } else if (value instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    Object definition = entry.getValue();
+                    if (definition instanceof Map) {
+                        definition = ((Map<?, ?>) definition).get("@id");
+                    }
+                    if (definition instanceof String) {
+                        context.put((String) entry.getKey(), (String) definition);
+                    }
+                }
+            }
+        }
+
+        private List<Object> array() {
+            pos++;
+            List<Object> array = new ArrayList<>();
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                skipWhitespace();
+                char c = peek();
+                pos++;
+                if (c == ']') {
+                    return array;
+                } else if (c != ',') {
+                    throw new IllegalStateException("Unexpected " + c);
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (true) {
+                char c = peek();
+                pos++;
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c == '\\') {
+                    char escaped = peek();
+                    pos++;
+                    switch (escaped) {
+                        case 'n':
+                            builder.append('\n');
+                            break;
+                        case 't':
+                            builder.append('\t');
+                            break;
+                        case 'r':
+                            builder.append('\r');
+                            break;
+                        case 'b':
+                            builder.append('\b');
+                            break;
+                        case 'f':
+                            builder.append('\f');
+                            break;
+                        case 'u':
+                            if (pos + 4 > text.length()) {
+                                throw new IllegalStateException("End of window");
+                            }
+                            try {
+                                builder.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            } catch (NumberFormatException e) {
+                                throw new IllegalStateException("Invalid escape " + text.substring(pos, pos + 4));
+                            }
+                            pos += 4;
+                            break;
+                        default:
+                            builder.append(escaped);
+                    }
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+
+        private void expect(char expected) {
+            char c = peek();
+            if (c != expected) {
+                throw new IllegalStateException("Expected " + expected + " instead of " + c);
+            }
+            pos++;
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw new IllegalStateException("End of window");
+            }
+            return text.charAt(pos);
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.vchavezb.utilities;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of writing a rule image
+ */
+@Name("com.github.vchavezb.WriteImage")
+@Label("Write Image")
+@Category("AOWLN")
+@Description("Writing of a rendered rule image, or copying it from the render cache")
+public class WriteImageEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Image")
+    String image;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputSize;
+
+    @Label("From Cache")
+    boolean fromCache;
+}
@@ -0,0 +1,40 @@
+package com.github.vchavezb.utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the rule images into a ZIP archive
+ */
+public class ZipOutputSink extends ArchiveOutputSink {
+
+    private final ZipOutputStream zip;
+    private final long time = System.currentTimeMillis();
+
+    /**
+     * @param file Archive file, replaced if it exists
+     * @throws IOException If the file cannot be created
+     */
+    public ZipOutputSink(Path file) throws IOException {
+        super(file);
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    @Override
+    protected void writeEntry(String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(time);
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        zip.close();
+    }
+}
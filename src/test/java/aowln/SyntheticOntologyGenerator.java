@@ -0,0 +1,369 @@
+package aowln;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.PrefixDocumentFormat;
+import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
+import org.semanticweb.owlapi.formats.TurtleDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Reproducible generator of large ontologies with SWRL rules for scale tests and benchmarks.
+ * The same seed and settings always produce the same files.
+ *
+ * The generated rules are a seeded mix of
+ *  - chains of classes linked by object properties, with data properties
+ *  - data properties restricted by a chain of swrlb builtins
+ *  - sqwrl:select queries with a configurable number of columns
+ * The classes and properties are declared (with an rdfs:label) in a tree of imported
+ * ontologies written to the directory {@code imports}, or in the root ontology if the
+ * import depth is 0. The imports are found with {@code -import DIR/imports}.
+ */
+public class SyntheticOntologyGenerator {
+
+    public static final String NAMESPACE = "http://example.org/aowln/synthetic#";
+    private static final String ONTOLOGY_IRI = "http://example.org/aowln/synthetic";
+    private static final String SWRLB = "http://www.w3.org/2003/11/swrlb#";
+    private static final String SQWRL = "http://sqwrl.stanford.edu/ontologies/built-ins/3.4/sqwrl.owl#";
+    private static final String[] COMPARISONS = {"greaterThan", "lessThan", "greaterThanOrEqual", "notEqual"};
+
+    public enum Format {
+        TURTLE(".ttl"), RDF_XML(".owl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        PrefixDocumentFormat create() {
+            return this == TURTLE ? new TurtleDocumentFormat() : new RDFXMLDocumentFormat();
+        }
+    }
+
+    private final long seed;
+    private int rules = 100;
+    private int minAtoms = 3;
+    private int maxAtoms = 10;
+    private int builtinChain = 4;
+    private int selectColumns = 3;
+    private double builtinRuleRatio = 0.25;
+    private double selectRuleRatio = 0.1;
+    private int importDepth = 0;
+    private int importFanout = 2;
+    private int vocabularySize = 200;
+    private Format format = Format.TURTLE;
+    private Format importFormat = Format.RDF_XML;
+
+    /**
+     * @param seed Seed of the random choices
+     */
+    public SyntheticOntologyGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param rules Number of SWRL rules of the root ontology
+     */
+    public void setRules(int rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * @param minAtoms Minimum number of body atoms per rule
+     * @param maxAtoms Maximum number of body atoms per rule
+     */
+    public void setAtoms(int minAtoms, int maxAtoms) {
+        if (minAtoms < 1 || maxAtoms < minAtoms) {
+            throw new IllegalArgumentException("Invalid atom range " + minAtoms + ".." + maxAtoms);
+        }
+        this.minAtoms = minAtoms;
+        this.maxAtoms = maxAtoms;
+    }
+
+    /**
+     * @param builtinChain Number of builtins chained after a data property in builtin rules
+     */
+    public void setBuiltinChain(int builtinChain) {
+        this.builtinChain = builtinChain;
+    }
+
+    /**
+     * @param selectColumns Number of columns of the sqwrl:select queries
+     */
+    public void setSelectColumns(int selectColumns) {
+        this.selectColumns = selectColumns;
+    }
+
+    /**
+     * @param builtinRuleRatio Share of the rules with builtin chains
+     * @param selectRuleRatio Share of the rules that are sqwrl:select queries
+     */
+    public void setRuleMix(double builtinRuleRatio, double selectRuleRatio) {
+        if (builtinRuleRatio < 0 || selectRuleRatio < 0 || builtinRuleRatio + selectRuleRatio > 1) {
+            throw new IllegalArgumentException("Invalid rule mix " + builtinRuleRatio + ", " + selectRuleRatio);
+        }
+        this.builtinRuleRatio = builtinRuleRatio;
+        this.selectRuleRatio = selectRuleRatio;
+    }
+
+    /**
+     * @param importDepth Depth of the import tree, 0 to declare everything in the root ontology
+     * @param importFanout Number of ontologies imported by each ontology of the tree
+     */
+    public void setImports(int importDepth, int importFanout) {
+        this.importDepth = importDepth;
+        this.importFanout = importFanout;
+    }
+
+    /**
+     * @param vocabularySize Number of classes and of object and data properties
+     */
+    public void setVocabularySize(int vocabularySize) {
+        this.vocabularySize = vocabularySize;
+    }
+
+    /**
+     * @param format Format of the root ontology
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * @param importFormat Format of the imported ontologies
+     */
+    public void setImportFormat(Format importFormat) {
+        this.importFormat = importFormat;
+    }
+
+    /**
+     * Write the root ontology and its imports
+     * @param dir Output directory, created if missing
+     * @return Path of the root ontology
+     * @throws IOException If the ontologies cannot be written
+     */
+    public Path generate(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        Random random = new Random(seed);
+        try {
+            OWLOntology root = manager.createOntology(IRI.create(ONTOLOGY_IRI));
+            List<OWLOntology> declaring = new ArrayList<>();
+            if (importDepth > 0) {
+                Path importDir = Files.createDirectories(dir.resolve("imports"));
+                List<IRI> children = createImports(manager, importDir, "import", 1);
+                for (IRI child : children) {
+                    manager.applyChange(new AddImport(root, factory.getOWLImportsDeclaration(child)));
+                }
+                declaring.addAll(manager.getOntologies());
+                declaring.remove(root);
+                // The manager does not keep the creation order
+                declaring.sort(Comparator.comparing(o -> o.getOntologyID().getOntologyIRI().get().toString()));
+            } else {
+                declaring.add(root);
+            }
+            declareVocabulary(manager, declaring);
+            addRules(manager, root, random);
+            Path rootFile = dir.resolve("synthetic" + format.getExtension());
+            save(manager, root, format, rootFile);
+            return rootFile;
+        } catch (OWLOntologyCreationException | OWLOntologyStorageException e) {
+            throw new IOException("Could not generate the ontology", e);
+        }
+    }
+
+    /**
+     * Create the subtree of imports below one level, the files are written after the vocabulary is declared
+     * @return Ontology IRIs of the created ontologies of this level
+     */
+    private List<IRI> createImports(OWLOntologyManager manager, Path importDir, String name, int level)
+            throws OWLOntologyCreationException {
+        List<IRI> created = new ArrayList<>();
+        for (int i = 0; i < importFanout; i++) {
+            String childName = name + "-" + i;
+            IRI iri = IRI.create(ONTOLOGY_IRI + "/" + childName);
+            OWLOntology child = manager.createOntology(iri);
+            manager.setOntologyDocumentIRI(child, IRI.create(importDir.resolve(childName + importFormat.getExtension()).toUri()));
+            if (level < importDepth) {
+                for (IRI grandChild : createImports(manager, importDir, childName, level + 1)) {
+                    manager.applyChange(new AddImport(child,
+                            manager.getOWLDataFactory().getOWLImportsDeclaration(grandChild)));
+                }
+            }
+            created.add(iri);
+        }
+        return created;
+    }
+
+    /**
+     * Spread the declarations and labels of the vocabulary over the given ontologies and
+     * write the imported ones
+     */
+    private void declareVocabulary(OWLOntologyManager manager, List<OWLOntology> ontologies)
+            throws OWLOntologyStorageException {
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        List<OWLEntity> entities = new ArrayList<>();
+        for (int i = 0; i < vocabularySize; i++) {
+            entities.add(factory.getOWLClass(IRI.create(NAMESPACE + "Class" + i)));
+            entities.add(factory.getOWLObjectProperty(IRI.create(NAMESPACE + "objectProperty" + i)));
+            entities.add(factory.getOWLDataProperty(IRI.create(NAMESPACE + "dataProperty" + i)));
+        }
+        entities.add(factory.getOWLClass(IRI.create(NAMESPACE + "Result")));
+        for (int i = 0; i < entities.size(); i++) {
+            OWLEntity entity = entities.get(i);
+            OWLOntology ontology = ontologies.get(i % ontologies.size());
+            manager.addAxiom(ontology, factory.getOWLDeclarationAxiom(entity));
+            manager.addAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(entity.getIRI(),
+                    factory.getOWLAnnotation(factory.getRDFSLabel(),
+                            factory.getOWLLiteral(entity.getIRI().getShortForm() + " label", "en"))));
+        }
+        for (OWLOntology ontology : ontologies) {
+            IRI documentIRI = manager.getOntologyDocumentIRI(ontology);
+            if ("file".equals(documentIRI.getScheme())) {
+                save(manager, ontology, importFormat, Paths.get(documentIRI.toURI()));
+            }
+        }
+    }
+
+    private void addRules(OWLOntologyManager manager, OWLOntology root, Random random) {
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        Set<OWLAxiom> axioms = new HashSet<>();
+        for (int r = 0; r < rules; r++) {
+            double kind = random.nextDouble();
+            int atoms = minAtoms + random.nextInt(maxAtoms - minAtoms + 1);
+            Set<SWRLAtom> body = new LinkedHashSet<>();
+            Set<SWRLAtom> head = new LinkedHashSet<>();
+            if (kind < selectRuleRatio) {
+                createSelectRule(factory, random, atoms, body, head);
+            } else if (kind < selectRuleRatio + builtinRuleRatio) {
+                createBuiltinRule(factory, random, atoms, body, head);
+            } else {
+                createChainRule(factory, random, atoms, body, head);
+            }
+            OWLAnnotation label = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral("rule" + r));
+            axioms.add(factory.getSWRLRule(body, head, Collections.singleton(label)));
+        }
+        manager.addAxioms(root, axioms);
+    }
+
+    /**
+     * Classes linked by object properties, every third variable with a data property
+     */
+    private void createChainRule(OWLDataFactory factory, Random random, int atoms, Set<SWRLAtom> body,
+                                 Set<SWRLAtom> head) {
+        body.add(classAtom(factory, random, 0));
+        for (int i = 1; body.size() < atoms; i++) {
+            body.add(factory.getSWRLObjectPropertyAtom(objectProperty(factory, random),
+                    variable(factory, "x" + (i - 1)), variable(factory, "x" + i)));
+            if (body.size() < atoms && random.nextBoolean()) {
+                body.add(classAtom(factory, random, i));
+            }
+            if (body.size() < atoms && i % 3 == 0) {
+                body.add(dataPropertyAtom(factory, random, "x" + i, "v" + i));
+            }
+        }
+        head.add(factory.getSWRLClassAtom(factory.getOWLClass(IRI.create(NAMESPACE + "Result")),
+                variable(factory, "x0")));
+    }
+
+    /**
+     * Data properties of one individual, each followed by a chain of arithmetic builtins and a comparison
+     */
+    private void createBuiltinRule(OWLDataFactory factory, Random random, int atoms, Set<SWRLAtom> body,
+                                   Set<SWRLAtom> head) {
+        body.add(classAtom(factory, random, 0));
+        for (int i = 0; body.size() < atoms; i++) {
+            String value = "v" + i;
+            body.add(dataPropertyAtom(factory, random, "x0", value));
+            for (int c = 0; c < builtinChain && body.size() < atoms; c++) {
+                String next = value + "_" + c;
+                body.add(builtIn(factory, SWRLB + (random.nextBoolean() ? "add" : "multiply"),
+                        variable(factory, next), variable(factory, value), literal(factory, random.nextInt(100))));
+                value = next;
+            }
+            if (body.size() < atoms) {
+                body.add(builtIn(factory, SWRLB + COMPARISONS[random.nextInt(COMPARISONS.length)],
+                        variable(factory, value), literal(factory, random.nextInt(1000))));
+            }
+        }
+        head.add(factory.getSWRLClassAtom(factory.getOWLClass(IRI.create(NAMESPACE + "Result")),
+                variable(factory, "x0")));
+    }
+
+    /**
+     * Query selecting an individual and its data property values
+     */
+    private void createSelectRule(OWLDataFactory factory, Random random, int atoms, Set<SWRLAtom> body,
+                                  Set<SWRLAtom> head) {
+        body.add(classAtom(factory, random, 0));
+        List<SWRLDArgument> columns = new ArrayList<>();
+        columns.add(variable(factory, "x0"));
+        for (int i = 1; columns.size() < selectColumns || body.size() < atoms; i++) {
+            body.add(dataPropertyAtom(factory, random, "x0", "v" + i));
+            if (columns.size() < selectColumns) {
+                columns.add(variable(factory, "v" + i));
+            }
+        }
+        head.add(factory.getSWRLBuiltInAtom(IRI.create(SQWRL + "select"), columns));
+    }
+
+    private SWRLAtom classAtom(OWLDataFactory factory, Random random, int i) {
+        return factory.getSWRLClassAtom(factory.getOWLClass(IRI.create(NAMESPACE + "Class" + random.nextInt(vocabularySize))),
+                variable(factory, "x" + i));
+    }
+
+    private OWLObjectProperty objectProperty(OWLDataFactory factory, Random random) {
+        return factory.getOWLObjectProperty(IRI.create(NAMESPACE + "objectProperty" + random.nextInt(vocabularySize)));
+    }
+
+    private SWRLAtom dataPropertyAtom(OWLDataFactory factory, Random random, String subject, String value) {
+        return factory.getSWRLDataPropertyAtom(
+                factory.getOWLDataProperty(IRI.create(NAMESPACE + "dataProperty" + random.nextInt(vocabularySize))),
+                variable(factory, subject), variable(factory, value));
+    }
+
+    private static SWRLAtom builtIn(OWLDataFactory factory, String iri, SWRLDArgument... arguments) {
+        List<SWRLDArgument> argumentList = new ArrayList<>();
+        Collections.addAll(argumentList, arguments);
+        return factory.getSWRLBuiltInAtom(IRI.create(iri), argumentList);
+    }
+
+    private static SWRLVariable variable(OWLDataFactory factory, String name) {
+        return factory.getSWRLVariable(IRI.create(NAMESPACE + name));
+    }
+
+    private static SWRLLiteralArgument literal(OWLDataFactory factory, int value) {
+        return factory.getSWRLLiteralArgument(factory.getOWLLiteral(value));
+    }
+
+    private static void save(OWLOntologyManager manager, OWLOntology ontology, Format format, Path file)
+            throws OWLOntologyStorageException {
+        PrefixDocumentFormat documentFormat = format.create();
+        documentFormat.setDefaultPrefix(NAMESPACE);
+        documentFormat.setPrefix("syn:", NAMESPACE);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            manager.saveOntology(ontology, documentFormat, out);
+        } catch (IOException e) {
+            throw new OWLOntologyStorageException(e);
+        }
+    }
+}
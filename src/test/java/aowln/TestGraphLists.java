@@ -0,0 +1,184 @@
+package aowln;
+
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.model.*;
+import com.github.vchavezb.utilities.AOWLNEngine;
+import com.github.vchavezb.utilities.GraphVizGenerator;
+import com.github.vchavezb.utilities.RenderContext;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestGraphLists {
+
+    /**
+     * Synthetic rule fragment with a chain of classes linked by object properties
+     * and data properties restricted by bound builtins
+     */
+    private static List<CustomSWRLAtom> createRuleFragment(int classes, int dataProperties) {
+        List<CustomSWRLAtom> atoms = new ArrayList<>();
+        for (int i = 0; i < classes; i++) {
+            atoms.add(new ClassAtomCustom("v" + i, "Class" + i + "\n(v" + i + ")"));
+        }
+        for (int i = 0; i < classes - 1; i++) {
+            atoms.add(new ObjectPropertyAtomCustom("v" + i, "v" + (i + 1), "prop" + i));
+        }
+        for (int i = 0; i < dataProperties; i++) {
+            atoms.add(new DataPropertyAtomCustom("v" + i, "d" + i, "data" + i));
+        }
+        for (int i = 0; i < dataProperties; i++) {
+            BuiltInAtomCustom builtIn = new BuiltInAtomCustom("BI" + i, "swrlb:greaterThan", true, new String[]{"d" + i});
+            builtIn.setLiterals(Collections.singletonList(Integer.toString(i)));
+            atoms.add(builtIn);
+        }
+        return atoms;
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void largeRuleTest() {
+        int classes = 2000;
+        int dataProperties = 500;
+        AOWLNEngine engine = new AOWLNEngine();
+        GraphListsForViz graph = engine.megaAlgorithmus(createRuleFragment(classes, dataProperties));
+
+        NodeInfo[] nodes = graph.getNodes();
+        assertEquals("Test number of nodes", classes + (classes - 1) + 2 * dataProperties, nodes.length);
+        NodeConnection[] connections = graph.getConnections();
+        assertEquals("Test number of connections", 2 * (classes - 1) + 2 * dataProperties, connections.length);
+
+        Set<NodeInfo> nodeSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(nodeSet, nodes);
+        for (NodeConnection connection : connections) {
+            assertNotNull("Test connection created", connection);
+            assertTrue("Test parent is a node of the graph", nodeSet.contains(connection.getParent()));
+            assertTrue("Test child is a node of the graph", nodeSet.contains(connection.getChild()));
+        }
+    }
+
+    @org.junit.Test
+    public void selectGroupingTest() {
+        List<CustomSWRLAtom> atoms = new ArrayList<>();
+        atoms.add(new ClassAtomCustom("p", "Person\n(p)"));
+        atoms.add(new DataPropertyAtomCustom("p", "a", "hasAge"));
+        atoms.add(new DataPropertyAtomCustom("p", "n", "hasName"));
+        BuiltInAtomCustom greaterThan = new BuiltInAtomCustom("BI0", "swrlb:greaterThan", true, new String[]{"a"});
+        greaterThan.setLiterals(Collections.singletonList("17"));
+        atoms.add(greaterThan);
+        atoms.add(new BuiltInAtomCustom("BI1", "sqwrl:select", false, new String[]{"n", "a"}));
+        GraphListsForViz graph = new AOWLNEngine().megaAlgorithmus(atoms);
+
+        int edgeLabels = 0;
+        for (NodeConnection connection : graph.getConnections()) {
+            if (connection != null && "swrlb:greaterThan(17)\n".equals(connection.getLabel())) {
+                edgeLabels++;
+            }
+        }
+        assertEquals("Test bound builtin grouped once by its first argument", 1, edgeLabels);
+        AOWLNEngine engine = new AOWLNEngine();
+        assertNotNull("Test select group of the first argument",
+                engine.getNodeInfo(graph.getNodes(), "nsqwrl:select"));
+        assertNotNull("Test select group of the second argument", engine.getNodeInfo(graph.getNodes(), "a"));
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void manyBuiltinsTest() {
+        int builtins = 20000;
+        List<CustomSWRLAtom> atoms = createRuleFragment(2, 0);
+        for (int i = 0; i < builtins; i++) {
+            atoms.add(new DataPropertyAtomCustom("v0", "d" + i, "data" + i));
+            BuiltInAtomCustom builtIn = new BuiltInAtomCustom("BI" + i, "swrlb:lessThan", true, new String[]{"d" + i});
+            builtIn.setLiterals(Collections.singletonList(Integer.toString(i)));
+            atoms.add(builtIn);
+        }
+        GraphListsForViz graph = new AOWLNEngine().megaAlgorithmus(atoms);
+        assertEquals("Test number of nodes", 3 + 2 * builtins, graph.getNodes().length);
+    }
+
+    @org.junit.Test
+    public void duplicateCaptionTest() throws IOException {
+        NodeInfo first = new NodeInfo("Thing\n(x)", "x1", AOWLNElementTypeEnum.Class.toString());
+        NodeInfo second = new NodeInfo("Thing\n(x)", "x2", AOWLNElementTypeEnum.Class.toString());
+        NodeInfo property = new NodeInfo("hasData", "p", AOWLNElementTypeEnum.Property.toString());
+        NodeConnection[] connections = {
+                new NodeConnection(first, property, EdgeTypeEnum.ObjectProperty, null),
+                new NodeConnection(property, second, EdgeTypeEnum.ObjectProperty, null)
+        };
+        GraphListsForViz graph = new GraphListsForViz(new NodeInfo[]{first, second, property}, connections);
+        File out = File.createTempFile("aowln", ".svg");
+        try {
+            assertTrue(new GraphVizGenerator().produceImage(graph, out));
+            String svg = new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8);
+            int renderedNodes = svg.split("class=\"node\"", -1).length - 1;
+            assertEquals("Test nodes with the same caption are rendered apart", 3, renderedNodes);
+        } finally {
+            out.delete();
+        }
+    }
+
+    @org.junit.Test
+    public void missingNodeTest() {
+        AOWLNEngine engine = new AOWLNEngine();
+        NodeInfo[] nodes = {new NodeInfo("Thing", "x", AOWLNElementTypeEnum.Class.toString())};
+        assertSame(nodes[0], engine.getNodeInfo(nodes, "x"));
+        assertNull("Test unknown identifier", engine.getNodeInfo(nodes, "y"));
+    }
+
+    private static <T extends CustomSWRLAtom> T onlyAtom(List<CustomSWRLAtom> atoms, Class<T> type) {
+        List<T> found = new ArrayList<>();
+        for (CustomSWRLAtom atom : atoms) {
+            if (type.isInstance(atom)) {
+                found.add(type.cast(atom));
+            }
+        }
+        assertEquals("Test one atom of type " + type.getSimpleName(), 1, found.size());
+        return found.get(0);
+    }
+
+    @org.junit.Test
+    public void argumentValuesTest() throws OWLOntologyCreationException {
+        String ns = "http://example.org/arguments#";
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        OWLOntology ontology = manager.createOntology(IRI.create("http://example.org/arguments"));
+        OWLObjectProperty hasParent = factory.getOWLObjectProperty(IRI.create(ns + "hasParent"));
+        manager.addAxiom(ontology, factory.getOWLDeclarationAxiom(hasParent));
+        manager.addAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(hasParent.getIRI(),
+                factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral("has parent", "en"))));
+        SWRLVariable x = factory.getSWRLVariable(IRI.create(ns + "x"));
+        SWRLVariable y = factory.getSWRLVariable(IRI.create(ns + "y"));
+        SWRLAtom inverse = factory.getSWRLObjectPropertyAtom(factory.getOWLObjectInverseOf(hasParent), x, y);
+        SWRLAtom individual = factory.getSWRLClassAtom(factory.getOWLClass(IRI.create(ns + "Person")),
+                factory.getSWRLIndividualArgument(factory.getOWLNamedIndividual(IRI.create(ns + "alice"))));
+        SWRLAtom typedLiteral = factory.getSWRLDataPropertyAtom(factory.getOWLDataProperty(IRI.create(ns + "hasAge")),
+                x, factory.getSWRLLiteralArgument(factory.getOWLLiteral("42", OWL2Datatype.XSD_INTEGER)));
+
+        RenderContext context = new AOWLNServiceFacade().createRenderContext(ontology);
+        List<CustomSWRLAtom> atoms = new AOWLNEngine().createSWRLAtomsForTree(context,
+                new HashSet<>(Arrays.asList(inverse, individual, typedLiteral)));
+
+        ObjectPropertyAtomCustom property = onlyAtom(atoms, ObjectPropertyAtomCustom.class);
+        assertEquals("Test inverse property shown by the label of the named property", "has parent", property.getLabel());
+        assertEquals("Test first argument of the inverse property", "x", property.getFirstArgument());
+        assertEquals("Test second argument of the inverse property", "y", property.getLastArgument());
+        ClassAtomCustom classAtom = onlyAtom(atoms, ClassAtomCustom.class);
+        assertEquals("Test individual argument shown by its IRI", "alice", classAtom.getKey());
+        assertEquals("Test class atom of an individual", "Person\n(alice)", classAtom.getLabel());
+        DataPropertyAtomCustom dataProperty = onlyAtom(atoms, DataPropertyAtomCustom.class);
+        assertEquals("Test typed literal shown by its lexical value", "42", dataProperty.getKey());
+        assertEquals("Test data property of a typed literal", "hasAge", dataProperty.getLabel());
+    }
+}
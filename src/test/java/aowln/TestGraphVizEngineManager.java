@@ -0,0 +1,99 @@
+package aowln;
+
+import com.github.vchavezb.utilities.GraphVizEngineManager;
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+import guru.nidi.graphviz.model.Factory;
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TestGraphVizEngineManager {
+
+    private final GraphVizEngineManager engineManager = GraphVizEngineManager.getInstance();
+    private int poolSize;
+    private boolean warmUp;
+
+    @Before
+    public void setUp() {
+        engineManager.shutdown();
+        poolSize = engineManager.getPoolSize();
+        warmUp = engineManager.isWarmUp();
+    }
+
+    @After
+    public void tearDown() {
+        engineManager.shutdown();
+        engineManager.setPoolSize(poolSize);
+        engineManager.setWarmUp(warmUp);
+    }
+
+    private static String renderGraph() {
+        return Graphviz.fromGraph(Factory.mutGraph().setDirected(true)
+                .add(Factory.mutNode("a").addLink(Factory.mutNode("b")))).render(Format.SVG).toString();
+    }
+
+    @org.junit.Test
+    public void poolTest() throws Exception {
+        engineManager.setPoolSize(2);
+        engineManager.setWarmUp(true);
+        engineManager.start();
+        assertNotNull("Test engine probed on start", engineManager.getEngineName());
+        try {
+            engineManager.setPoolSize(3);
+            fail("Test pool size fixed once started");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> threads = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                threads.add(callers.submit(() -> engineManager.render(() -> {
+                    assertTrue("Test render output", renderGraph().contains("<svg"));
+                    return Thread.currentThread().getName();
+                })));
+            }
+            Set<String> names = new HashSet<>();
+            for (Future<String> thread : threads) {
+                names.add(thread.get());
+            }
+            assertTrue("Test renders executed on the engine threads: " + names,
+                    names.stream().allMatch(name -> name.startsWith("graphviz-engine-")));
+            assertTrue("Test at most one engine per pool thread", names.size() <= 2);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @org.junit.Test
+    public void shutdownWhileRenderingTest() throws Exception {
+        engineManager.setPoolSize(2);
+        engineManager.setWarmUp(false);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> renders = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                renders.add(callers.submit(() -> engineManager.render(TestGraphVizEngineManager::renderGraph)));
+                if (i % 10 == 0) {
+                    engineManager.shutdown();
+                }
+            }
+            for (Future<String> render : renders) {
+                assertTrue("Test render not rejected by a concurrent shutdown", render.get().contains("<svg"));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package aowln;
+
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.utilities.CompositeIRIMapper;
+import com.github.vchavezb.utilities.IRIMapper;
+import com.github.vchavezb.utilities.RenderContext;
+import org.junit.Assume;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TestIRIMapper {
+
+    private static final long SEED = 20240601L;
+    private static final String IMPORT_IRI = "http://example.org/aowln/synthetic/import-0";
+
+    private static Path generateImports(String name) throws IOException {
+        Path dir = Paths.get("target", "iri-mapper", name);
+        if (Files.exists(dir)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(SEED);
+        generator.setRules(1);
+        generator.setImports(2, 3);
+        return generator.generate(dir).resolveSibling("imports");
+    }
+
+    private static Map<IRI, IRI> mappings(IRIMapper mapper) {
+        Map<IRI, IRI> mappings = new HashMap<>();
+        for (IRI ontologyIRI : mapper.getOntologyIRIs()) {
+            mappings.put(ontologyIRI, mapper.getDocumentIRI(ontologyIRI));
+        }
+        return mappings;
+    }
+
+    @org.junit.Test
+    public void parallelScanTest() throws IOException {
+        Path imports = generateImports("parallel");
+        IRIMapper sequential = new IRIMapper(imports.toFile(), true, false);
+        sequential.setParallelism(1);
+        IRIMapper parallel = new IRIMapper(imports.toFile(), true, false);
+        parallel.setParallelism(4);
+        Map<IRI, IRI> expected = mappings(sequential);
+        // The xml:base shared by all files is mapped as well
+        assertEquals("Test all imported ontologies mapped", 12,
+                expected.keySet().stream().filter(iri -> iri.toString().contains("/import-")).count());
+        assertEquals("Test parallel scan maps like a sequential scan", expected, mappings(parallel));
+        assertEquals("Test document of an import", IRI.create(imports.resolve("import-0.owl").toFile()),
+                expected.get(IRI.create(IMPORT_IRI)));
+    }
+
+    @org.junit.Test
+    public void indexTest() throws IOException {
+        Path imports = generateImports("index");
+        File indexDir = imports.resolveSibling("index").toFile();
+        IRIMapper first = new IRIMapper(imports.toFile(), true, false);
+        first.setIndexDirectory(indexDir);
+        Map<IRI, IRI> expected = mappings(first);
+        assertEquals("Test index written", 1, indexDir.list().length);
+
+        // Same size and modification time, the index is trusted and the file is not read
+        Path file = imports.resolve("import-0.owl");
+        FileTime modified = Files.getLastModifiedTime(file);
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Files.write(file, content.replace(IMPORT_IRI, IMPORT_IRI.replace("import-0", "import-X"))
+                .getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, modified);
+        IRIMapper second = new IRIMapper(imports.toFile(), true, false);
+        second.setIndexDirectory(indexDir);
+        assertEquals("Test unchanged files mapped from the index", expected, mappings(second));
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 2000));
+        IRIMapper third = new IRIMapper(imports.toFile(), true, false);
+        third.setIndexDirectory(indexDir);
+        Map<IRI, IRI> changed = mappings(third);
+        assertNull("Test changed file sniffed again", changed.get(IRI.create(IMPORT_IRI)));
+        assertEquals("Test changed file mapped to its new IRI", IRI.create(file.toFile()),
+                changed.get(IRI.create(IMPORT_IRI.replace("import-0", "import-X"))));
+    }
+
+    private static String rdfXml(String ontologyIRI, String header, String body) {
+        return "<?xml version=\"1.0\"?>\n"
+                + "<rdf:RDF xmlns:owl=\"http://www.w3.org/2002/07/owl#\"\n"
+                + "     xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n"
+                + "    <owl:Ontology rdf:about=\"" + ontologyIRI + "\">" + header + "</owl:Ontology>\n"
+                + body + "</rdf:RDF>\n";
+    }
+
+    private static String owlXml(String ontologyAttributes, String body) {
+        return "<?xml version=\"1.0\"?>\n"
+                + "<Ontology xmlns=\"http://www.w3.org/2002/07/owl#\" " + ontologyAttributes + ">\n"
+                + "    <Prefix name=\"owl\" IRI=\"http://www.w3.org/2002/07/owl#\"/>\n"
+                + "    <Import>http://example.org/imported</Import>\n"
+                + "    <Annotation><AnnotationProperty abbreviatedIRI=\"rdfs:comment\"/>"
+                + "<Literal>Header</Literal></Annotation>\n"
+                + body + "</Ontology>\n";
+    }
+
+    @org.junit.Test
+    public void versionIRITest() throws IOException {
+        Path dir = Paths.get("target", "iri-mapper", "version");
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("versioned.owl"), rdfXml("http://example.org/versioned",
+                "<owl:versionIRI rdf:resource=\"http://example.org/versioned/1.0\"/>", "")
+                .getBytes(StandardCharsets.UTF_8));
+        StringBuilder body = new StringBuilder("    <owl:Class rdf:about=\"http://example.org/late#C\">"
+                + "<owl:versionIRI rdf:resource=\"http://example.org/late/1.0\"/></owl:Class>\n");
+        for (int i = 0; i < 10000; i++) {
+            body.append("    <owl:Class rdf:about=\"http://example.org/late#C").append(i).append("\"/>\n");
+        }
+        Files.write(dir.resolve("late.owl"), rdfXml("http://example.org/late", "", body.toString())
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("versioned-xml.owl"), owlXml("ontologyIRI=\"http://example.org/versioned-xml\" "
+                + "versionIRI=\"http://example.org/versioned-xml/1.0\"", "").getBytes(StandardCharsets.UTF_8));
+        StringBuilder owlXmlBody = new StringBuilder("    <Declaration><Class IRI=\"#C\"/></Declaration>\n"
+                + "    <versionIRI IRI=\"http://example.org/late-xml/1.0\"/>\n");
+        for (int i = 0; i < 10000; i++) {
+            owlXmlBody.append("    <Declaration><Class IRI=\"#C").append(i).append("\"/></Declaration>\n");
+        }
+        Files.write(dir.resolve("late-xml.owl"), owlXml("ontologyIRI=\"http://example.org/late-xml\"",
+                owlXmlBody.toString()).getBytes(StandardCharsets.UTF_8));
+        for (boolean prescan : new boolean[]{true, false}) {
+            IRIMapper mapper = new IRIMapper(dir.toFile(), false, true);
+            mapper.setPrescan(prescan);
+            mapper.setMaxHeaderBytes(4096);
+            Map<IRI, IRI> mappings = mappings(mapper);
+            assertEquals("Test version IRI of the header mapped",
+                    IRI.create(dir.resolve("versioned.owl").toFile()), mappings.get(IRI.create("http://example.org/versioned/1.0")));
+            assertEquals("Test ontology without version IRI mapped",
+                    IRI.create(dir.resolve("late.owl").toFile()), mappings.get(IRI.create("http://example.org/late")));
+            assertNull("Test sniffing stops at the end of the ontology header",
+                    mappings.get(IRI.create("http://example.org/late/1.0")));
+            assertEquals("Test version IRI attribute of OWL/XML mapped",
+                    IRI.create(dir.resolve("versioned-xml.owl").toFile()), mappings.get(IRI.create("http://example.org/versioned-xml/1.0")));
+            assertEquals("Test OWL/XML ontology without version IRI mapped",
+                    IRI.create(dir.resolve("late-xml.owl").toFile()), mappings.get(IRI.create("http://example.org/late-xml")));
+            assertNull("Test OWL/XML sniffing stops at the end of the ontology header",
+                    mappings.get(IRI.create("http://example.org/late-xml/1.0")));
+        }
+    }
+
+    @org.junit.Test
+    public void compositeTest() throws IOException {
+        Path first = generateImports("composite-a");
+        Path second = generateImports("composite-b");
+        CompositeIRIMapper mapper = new CompositeIRIMapper(Arrays.asList(first.toFile(), second.toFile()), true, false);
+        assertEquals("Test last directory takes precedence", IRI.create(second.resolve("import-0.owl").toFile()),
+                mapper.getDocumentIRI(IRI.create(IMPORT_IRI)));
+        assertEquals("Test scan time of each directory", 2, mapper.getScanMillis().size());
+        CompositeIRIMapper reversed = new CompositeIRIMapper(Arrays.asList(second.toFile(), first.toFile()), true, false);
+        assertEquals("Test precedence follows the directory order", IRI.create(first.resolve("import-0.owl").toFile()),
+                reversed.getDocumentIRI(IRI.create(IMPORT_IRI)));
+        // Per folder mappers are consulted in the reverse order they are added to a manager
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        manager.getIRIMappers().add(new IRIMapper(first.toFile(), true, false));
+        manager.getIRIMappers().add(new IRIMapper(second.toFile(), true, false));
+        IRI perFolder = null;
+        for (OWLOntologyIRIMapper folderMapper : manager.getIRIMappers()) {
+            perFolder = folderMapper.getDocumentIRI(IRI.create(IMPORT_IRI));
+            if (perFolder != null) {
+                break;
+            }
+        }
+        assertEquals("Test precedence of one mapper per folder", perFolder, mapper.getDocumentIRI(IRI.create(IMPORT_IRI)));
+        assertEquals("Test composite maps the ontologies of a single mapper",
+                mappings(new IRIMapper(first.toFile(), true, false)).keySet(), mapper.getOntologyIRIs());
+    }
+
+    @org.junit.Test
+    public void textFormatsTest() throws IOException {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(SEED);
+        generator.setRules(5);
+        generator.setImports(2, 2);
+        generator.setImportFormat(SyntheticOntologyGenerator.Format.TURTLE);
+        Path root = generator.generate(Paths.get("target", "iri-mapper", "turtle"));
+        Path imports = root.resolveSibling("imports");
+        Files.write(imports.resolve("triples.nt"), ("<http://example.org/nt> "
+                + "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://www.w3.org/2002/07/owl#Ontology> .\n"
+                + "<http://example.org/nt> <http://www.w3.org/2002/07/owl#versionIRI> <http://example.org/nt/1.0> .\n")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(imports.resolve("linked.jsonld"), ("{\"@context\": {\"owl\": \"http://www.w3.org/2002/07/owl#\"},\n"
+                + " \"@graph\": [{\"@id\": \"http://example.org/jsonld\", \"@type\": \"owl:Ontology\",\n"
+                + "   \"owl:versionIRI\": {\"@id\": \"http://example.org/jsonld/1.0\"}}]}")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(imports.resolve("base.ttl"), ("@base <http://example.org/base> .\n"
+                + "<> a <http://www.w3.org/2002/07/owl#Ontology> ;\n"
+                + "   <http://www.w3.org/2002/07/owl#versionIRI> <#1.0> .\n")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(imports.resolve("escaped.jsonld"), ("[{\"@id\": \"http://example.org/escaped\",\n"
+                + "  \"@type\": \"http://www.w3.org/2002/07/owl#Ontology\"},\n"
+                + " {\"@id\": \"http://example.org/\\uZZZZ\"}]")
+                .getBytes(StandardCharsets.UTF_8));
+
+        Map<IRI, IRI> mappings = mappings(new IRIMapper(imports.toFile(), true, true));
+        assertEquals("Test Turtle import mapped", IRI.create(imports.resolve("import-0.ttl").toFile()),
+                mappings.get(IRI.create(IMPORT_IRI)));
+        assertEquals("Test all Turtle imports mapped", 6,
+                mappings.keySet().stream().filter(iri -> iri.toString().contains("/import-")).count());
+        assertEquals("Test N-Triples version IRI mapped", IRI.create(imports.resolve("triples.nt").toFile()),
+                mappings.get(IRI.create("http://example.org/nt/1.0")));
+        assertEquals("Test JSON-LD ontology mapped", IRI.create(imports.resolve("linked.jsonld").toFile()),
+                mappings.get(IRI.create("http://example.org/jsonld")));
+        assertEquals("Test JSON-LD version IRI mapped", IRI.create(imports.resolve("linked.jsonld").toFile()),
+                mappings.get(IRI.create("http://example.org/jsonld/1.0")));
+        assertEquals("Test empty reference resolved to the base", IRI.create(imports.resolve("base.ttl").toFile()),
+                mappings.get(IRI.create("http://example.org/base")));
+        assertEquals("Test fragment reference resolved against the base", IRI.create(imports.resolve("base.ttl").toFile()),
+                mappings.get(IRI.create("http://example.org/base#1.0")));
+        assertEquals("Test JSON-LD ontology before an invalid escape mapped",
+                IRI.create(imports.resolve("escaped.jsonld").toFile()),
+                mappings.get(IRI.create("http://example.org/escaped")));
+
+        ArrayList<String> importDirs = new ArrayList<>();
+        importDirs.add(imports.toString());
+        RenderContext context = new AOWLNServiceFacade().loadRenderContext(root.toString(), importDirs);
+        assertEquals("Test labels of the Turtle imports", "Result label",
+                context.getLabelIndex().getLabel(IRI.create(SyntheticOntologyGenerator.NAMESPACE + "Result")));
+    }
+
+    @org.junit.Test
+    public void symbolicLinkTest() throws IOException {
+        Path imports = generateImports("links");
+        Path links = imports.resolveSibling("links");
+        Path nested = imports.resolveSibling("nested");
+        Files.createDirectories(links);
+        Files.createDirectories(nested);
+        Files.move(imports.resolve("import-1.owl"), nested.resolve("import-1.owl"));
+        try {
+            Files.createSymbolicLink(links.resolve("import-0.owl"), imports.resolve("import-0.owl").toAbsolutePath());
+            Files.createSymbolicLink(links.resolve("nested"), nested.toAbsolutePath());
+            Files.createSymbolicLink(links.resolve("loop"), links.toAbsolutePath());
+            Files.createSymbolicLink(imports.resolveSibling("root-link"), links.toAbsolutePath());
+        } catch (UnsupportedOperationException | IOException e) {
+            Assume.assumeNoException("Symbolic links are not supported", e);
+        }
+        for (Path root : new Path[]{links, imports.resolveSibling("root-link")}) {
+            Map<IRI, IRI> mappings = mappings(new IRIMapper(root.toFile(), true, false));
+            assertEquals("Test linked file mapped", IRI.create(root.resolve("import-0.owl").toFile()),
+                    mappings.get(IRI.create(IMPORT_IRI)));
+            assertEquals("Test file of a linked directory mapped",
+                    IRI.create(root.resolve("nested").resolve("import-1.owl").toFile()),
+                    mappings.get(IRI.create(IMPORT_IRI.replace("import-0", "import-1"))));
+        }
+    }
+}
@@ -5,13 +5,38 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.controller.RuleBatchRenderer;
+import com.github.vchavezb.controller.RuleRenderFailure;
+import com.github.vchavezb.utilities.ArchiveOutputSink;
+import com.github.vchavezb.utilities.RenderContext;
+import com.github.vchavezb.utilities.RenderMetrics;
+import com.github.vchavezb.utilities.RenderMetricsMXBean;
+import com.github.vchavezb.utilities.RuleOutputSink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.swrlapi.core.SWRLAPIRule;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipFile;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import static org.junit.Assert.*;
 
@@ -69,6 +94,240 @@ public class TestLoad {
             assertTrue ("Test swrl rules image created", res);
         }
     }
-}
 
+    @org.junit.Test
+    public void deterministicTest() throws IOException {
+        // Two facades load the ontology with separate ontology managers, like two runs of the tool
+        AOWLNServiceFacade firstFacade = new AOWLNServiceFacade();
+        AOWLNServiceFacade secondFacade = new AOWLNServiceFacade();
+        firstFacade.setDeterministic(true);
+        secondFacade.setDeterministic(true);
+        RenderContext first = firstFacade.loadRenderContext("simple.ttl", null);
+        RenderContext second = secondFacade.loadRenderContext("simple.ttl", null);
+        assertNotSame("Test separate ontology loads", first.getOntology(), second.getOntology());
+        assertEquals(first.getRules().size(), second.getRules().size());
+        for (SWRLAPIRule firstRule : first.getRules()) {
+            SWRLAPIRule secondRule = second.getRule(firstRule.getRuleName());
+            assertNotNull("Test rule loaded twice", secondRule);
+            for (String part : new String[]{"body", "head"}) {
+                assertArrayEquals("Test identical rules produce identical images",
+                        firstFacade.renderRuleImage(first, firstRule, part),
+                        secondFacade.renderRuleImage(second, secondRule, part));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void metricsTest() {
+        this.facade = new AOWLNServiceFacade();
+        RenderMetrics metrics = new RenderMetrics();
+        this.facade.setMetrics(metrics);
+        ArrayList<SWRLAPIRule> swrlrules = this.facade.getOntologyRules("simple.ttl",null);
+        List<RuleRenderFailure> failures = new RuleBatchRenderer(this.facade, 2).render(tmpFolder.toPath(),
+                RuleBatchRenderer.imageNames(swrlrules, false), swrlrules);
+        assertTrue("Test all rules rendered", failures.isEmpty());
+        assertEquals("Test ontology load timed", 1, metrics.getSummary(RenderMetrics.Stage.LOAD_ONTOLOGY).getCount());
+        assertEquals("Test layout timed per image", 2 * swrlrules.size(),
+                metrics.getSummary(RenderMetrics.Stage.LAYOUT).getCount());
+        assertEquals("Test rendered rules counted", swrlrules.size(), metrics.getRulesRendered());
+        assertTrue("Test slowest rule has its layout time",
+                metrics.getSlowestRules().get(0).getStageNanos(RenderMetrics.Stage.LAYOUT) > 0);
+    }
+
+    @org.junit.Test
+    public void metricsMBeanTest() throws Exception {
+        RenderMetrics first = new RenderMetrics();
+        RenderMetrics second = new RenderMetrics();
+        first.registerMBean();
+        second.registerMBean();
+        try {
+            for (long nanos = 1; nanos <= 100; nanos++) {
+                second.record(RenderMetrics.Stage.LAYOUT, nanos * 1_000_000);
+            }
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(RenderMetrics.OBJECT_NAME);
+            Map<String, Long> counts = JMX.newMXBeanProxy(server, name, RenderMetricsMXBean.class).getStageCounts();
+            assertEquals("Test last registered metrics served", Long.valueOf(100), counts.get("LAYOUT"));
+            assertEquals("Test total without the percentiles", 5050.0,
+                    second.getStageTotalMillis().get("LAYOUT"), 1e-9);
+            assertEquals("Test p99 of the samples", 99.0, second.getStageP99Millis().get("LAYOUT"), 1e-9);
+            first.unregisterMBean();
+            assertTrue("Test replaced metrics do not unregister the current ones", server.isRegistered(name));
+            second.unregisterMBean();
+            assertFalse("Test metrics unregistered", server.isRegistered(name));
+        } finally {
+            second.unregisterMBean();
+        }
+    }
+
+    @org.junit.Test
+    public void inMemoryTest() throws IOException {
+        this.facade = new AOWLNServiceFacade();
+        RenderContext context = this.facade.loadRenderContext("simple.ttl", null);
+        SWRLAPIRule rule = context.getRules().get(0);
+        assertTrue(this.facade.produceRuleImage(context, tmpFolder.toPath(), "file", rule));
+        for (String part : new String[]{"body", "head"}) {
+            byte[] expected = Files.readAllBytes(new File(tmpFolder, "file-" + part + ".svg").toPath());
+            assertArrayEquals("Test in memory image equals the image file", expected,
+                    this.facade.renderRuleImage(context, rule, part));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            this.facade.renderRuleImage(context, rule, part, out);
+            assertArrayEquals("Test streamed image equals the image file", expected, out.toByteArray());
+        }
+    }
+
+    @org.junit.Test
+    public void archiveTest() throws IOException {
+        this.facade = new AOWLNServiceFacade();
+        ArrayList<SWRLAPIRule> swrlrules = this.facade.getOntologyRules("simple.ttl",null);
+        List<String> imageNames = RuleBatchRenderer.imageNames(swrlrules, false);
+        RuleBatchRenderer renderer = new RuleBatchRenderer(this.facade, 2);
+        assertTrue(renderer.render(tmpFolder.toPath(), imageNames, swrlrules).isEmpty());
+        File archive = new File(tmpFolder, "rules.zip");
+        try (RuleOutputSink sink = RuleOutputSink.open(archive.toPath())) {
+            assertTrue("Test all rules rendered into the archive", renderer.render(sink, imageNames, swrlrules).isEmpty());
+        }
+        try (ZipFile zip = new ZipFile(archive)) {
+            assertEquals("Test one entry per image and the index", 2 * swrlrules.size() + 1, zip.size());
+            assertNotNull("Test archive index", zip.getEntry(ArchiveOutputSink.INDEX_NAME));
+            for (String imageName : imageNames) {
+                for (String part : new String[]{"body", "head"}) {
+                    String name = imageName + "-" + part + ".svg";
+                    try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+                        assertArrayEquals("Test archive entry equals the image file",
+                                Files.readAllBytes(new File(tmpFolder, name).toPath()), in.readAllBytes());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the entries of a tar archive, checking the header checksums and resolving pax paths
+     */
+    private static Map<String, byte[]> readTar(InputStream in) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        DataInputStream data = new DataInputStream(in);
+        String paxPath = null;
+        byte[] header = new byte[512];
+        while (true) {
+            data.readFully(header);
+            boolean end = true;
+            for (byte b : header) {
+                end &= b == 0;
+            }
+            if (end) {
+                break;
+            }
+            long checksum = 0;
+            for (int i = 0; i < header.length; i++) {
+                checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+            }
+            assertEquals("Test tar header checksum", checksum, octal(header, 148, 8));
+            assertEquals("Test ustar magic", "ustar\0", new String(header, 257, 6, StandardCharsets.US_ASCII));
+            int size = (int) octal(header, 124, 12);
+            byte[] content = new byte[size];
+            data.readFully(content);
+            data.readFully(new byte[(512 - size % 512) % 512]);
+            if (header[156] == 'x') {
+                String records = new String(content, StandardCharsets.UTF_8);
+                String[] record = records.split(" ", 2);
+                assertEquals("Test pax record length", Integer.parseInt(record[0]), content.length);
+                assertTrue("Test pax path record", record[1].startsWith("path=") && record[1].endsWith("\n"));
+                paxPath = record[1].substring(5, record[1].length() - 1);
+                continue;
+            }
+            assertEquals("Test regular file entry", '0', header[156]);
+            String name = paxPath;
+            if (name == null) {
+                int length = 0;
+                while (length < 100 && header[length] != 0) {
+                    length++;
+                }
+                name = new String(header, 0, length, StandardCharsets.US_ASCII);
+            }
+            paxPath = null;
+            entries.put(name, content);
+        }
+        return entries;
+    }
+
+    private static long octal(byte[] header, int offset, int length) {
+        String digits = new String(header, offset, length, StandardCharsets.US_ASCII).replace("\0", "").trim();
+        return Long.parseLong(digits, 8);
+    }
+
+    @org.junit.Test
+    public void tarArchiveTest() throws IOException {
+        this.facade = new AOWLNServiceFacade();
+        ArrayList<SWRLAPIRule> swrlrules = this.facade.getOntologyRules("simple.ttl",null);
+        List<String> imageNames = RuleBatchRenderer.imageNames(swrlrules, false);
+        RuleBatchRenderer renderer = new RuleBatchRenderer(this.facade, 2);
+        assertTrue(renderer.render(tmpFolder.toPath(), imageNames, swrlrules).isEmpty());
+        // Names over the 100 bytes of the ustar header and with characters outside of ASCII
+        List<String> archiveNames = new ArrayList<>();
+        for (int i = 0; i < imageNames.size(); i++) {
+            StringBuilder prefix = new StringBuilder();
+            while (prefix.length() <= 100) {
+                prefix.append(i % 2 == 0 ? "long_name_" : "r\u00e8gle_\u00fc_");
+            }
+            archiveNames.add(prefix + imageNames.get(i));
+        }
+        for (String archiveName : new String[]{"rules.tar", "rules.tgz"}) {
+            File archive = new File(tmpFolder, archiveName);
+            try (RuleOutputSink sink = RuleOutputSink.open(archive.toPath())) {
+                assertTrue("Test all rules rendered into the archive", renderer.render(sink, archiveNames, swrlrules).isEmpty());
+            }
+            Map<String, byte[]> entries;
+            try (InputStream in = Files.newInputStream(archive.toPath())) {
+                entries = readTar(archiveName.endsWith(".tgz") ? new GZIPInputStream(in) : in);
+            }
+            assertEquals("Test one entry per image and the index", 2 * swrlrules.size() + 1, entries.size());
+            assertNotNull("Test archive index", entries.get(ArchiveOutputSink.INDEX_NAME));
+            for (int i = 0; i < imageNames.size(); i++) {
+                for (String part : new String[]{"body", "head"}) {
+                    String name = archiveNames.get(i) + "-" + part + ".svg";
+                    assertNotNull("Test entry stored with its full name", entries.get(name));
+                    assertArrayEquals("Test archive entry equals the image file",
+                            Files.readAllBytes(new File(tmpFolder, imageNames.get(i) + "-" + part + ".svg").toPath()),
+                            entries.get(name));
+                }
+            }
+        }
+    }
 
+    @org.junit.Test
+    public void sharedContextTest() throws Exception {
+        this.facade = new AOWLNServiceFacade();
+        RenderContext context = this.facade.loadRenderContext("simple.ttl", null);
+        List<SWRLAPIRule> swrlrules = context.getRules();
+        for (int i = 0; i < swrlrules.size(); i++) {
+            assertTrue(this.facade.produceRuleImage(context, tmpFolder.toPath(), "seq_" + i, swrlrules.get(i)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int n = 0; n < 4; n++) {
+                for (int i = 0; i < swrlrules.size(); i++) {
+                    String name = "par_" + n + "_" + i;
+                    SWRLAPIRule rule = swrlrules.get(i);
+                    results.add(executor.submit(() -> this.facade.produceRuleImage(context, tmpFolder.toPath(), name, rule)));
+                }
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue("Test concurrent rule image created", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int n = 0; n < 4; n++) {
+            for (int i = 0; i < swrlrules.size(); i++) {
+                for (String part : new String[]{"body", "head"}) {
+                    byte[] expected = Files.readAllBytes(new File(tmpFolder, "seq_" + i + "-" + part + ".svg").toPath());
+                    byte[] actual = Files.readAllBytes(new File(tmpFolder, "par_" + n + "_" + i + "-" + part + ".svg").toPath());
+                    assertArrayEquals("Test shared context renders like a sequential run", expected, actual);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package aowln;
+
+import com.github.vchavezb.utilities.OntologyLabelIndex;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TestOntologyLabelIndex {
+
+    private static final String NS = "http://example.org/labels#";
+
+    private OWLOntologyManager manager;
+    private OWLDataFactory factory;
+
+    private OWLClass declare(OWLOntology ontology, String name) {
+        OWLClass owlClass = factory.getOWLClass(IRI.create(NS + name));
+        manager.addAxiom(ontology, factory.getOWLDeclarationAxiom(owlClass));
+        return owlClass;
+    }
+
+    private void label(OWLOntology ontology, OWLClass owlClass, String label, String language) {
+        manager.addAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(owlClass.getIRI(),
+                factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(label, language))));
+    }
+
+    @org.junit.Test
+    public void languageAndImportTest() throws OWLOntologyCreationException {
+        manager = OWLManager.createOWLOntologyManager();
+        factory = manager.getOWLDataFactory();
+        OWLOntology imported = manager.createOntology(IRI.create("http://example.org/labels/imported"));
+        OWLOntology ontology = manager.createOntology(IRI.create("http://example.org/labels"));
+        manager.applyChange(new AddImport(ontology, factory.getOWLImportsDeclaration(imported.getOntologyID().getOntologyIRI().get())));
+
+        OWLClass own = declare(ontology, "Own");
+        label(ontology, own, "Own thing", "");
+        label(ontology, own, "Eigenes Ding", "de");
+        label(imported, own, "Imported thing", "en");
+        OWLClass importedOnly = declare(ontology, "ImportedOnly");
+        label(imported, importedOnly, "Chose", "fr");
+        label(imported, importedOnly, "Thing", "en");
+        OWLClass fallback = declare(ontology, "Fallback");
+        label(ontology, fallback, "Repli", "fr");
+        OWLClass unused = declare(imported, "Unused");
+        label(imported, unused, "Unused", "en");
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            OntologyLabelIndex index = OntologyLabelIndex.build(ontology, OntologyLabelIndex.DEFAULT_LANGUAGES, parallel);
+            assertEquals("Test label of the ontology wins over a preferred label of an import",
+                    "Own thing", index.getLabel(own.getIRI()));
+            assertEquals("Test preferred language of an import", "Thing", index.getLabel(importedOnly.getIRI()));
+            assertEquals("Test label outside the preference chain used as fallback",
+                    "Repli", index.getLabel(fallback.getIRI()));
+            assertNull("Test entity not used by the ontology has no label", index.getLabel(unused.getIRI()));
+            assertEquals("Test number of labeled entities", 3, index.size());
+        }
+
+        OntologyLabelIndex german = OntologyLabelIndex.build(ontology, Arrays.asList("de", "en"), false);
+        assertEquals("Test first language of the chain", "Eigenes Ding", german.getLabel(own.getIRI()));
+        assertEquals("Test next language of the chain", "Thing", german.getLabel(importedOnly.getIRI()));
+        OntologyLabelIndex untagged = OntologyLabelIndex.build(ontology, Collections.singletonList(""), false);
+        assertEquals("Test labels without language tag", "Own thing", untagged.getLabel(own.getIRI()));
+    }
+}
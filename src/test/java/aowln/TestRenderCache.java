@@ -0,0 +1,110 @@
+package aowln;
+
+import com.github.vchavezb.model.EdgeTypeEnum;
+import com.github.vchavezb.model.GraphListsForViz;
+import com.github.vchavezb.model.NodeConnection;
+import com.github.vchavezb.model.NodeInfo;
+import com.github.vchavezb.utilities.RenderCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestRenderCache {
+
+    private static Path emptyDirectory(String name) throws IOException {
+        Path dir = Files.createDirectories(Paths.get("target", "render-cache", name));
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        return dir;
+    }
+
+    private static byte[] image(char fill) {
+        byte[] image = new byte[100];
+        Arrays.fill(image, (byte) fill);
+        return image;
+    }
+
+    @org.junit.Test
+    public void evictionTest() throws IOException {
+        RenderCache cache = new RenderCache(emptyDirectory("eviction"), 250);
+        assertNull("Test empty cache misses", cache.fetch("a"));
+        cache.store("a", image('a'));
+        cache.store("b", image('b'));
+        assertArrayEquals("Test stored image fetched", image('a'), cache.fetch("a"));
+        cache.store("c", image('c'));
+
+        assertEquals("Test least recently used entry evicted", 2, cache.getEntryCount());
+        assertEquals("Test size within the limit", 200, cache.getSizeBytes());
+        assertNull("Test evicted entry misses", cache.fetch("b"));
+        assertFalse("Test evicted entry file deleted", Files.exists(cache.getDirectory().resolve("b.svg")));
+        assertArrayEquals("Test recently used entry kept", image('a'), cache.fetch("a"));
+        assertArrayEquals("Test new entry kept", image('c'), cache.fetch("c"));
+        assertEquals("Test hits counted", 3, cache.getHits());
+        assertEquals("Test misses counted", 2, cache.getMisses());
+
+        cache.store("a", image('A'));
+        assertEquals("Test replaced entry counted once", 200, cache.getSizeBytes());
+        assertArrayEquals("Test replaced entry fetched", image('A'), cache.fetch("a"));
+    }
+
+    @org.junit.Test
+    public void reloadTest() throws IOException {
+        Path dir = emptyDirectory("reload");
+        RenderCache cache = new RenderCache(dir, 1000);
+        for (char key : new char[]{'a', 'b', 'c'}) {
+            cache.store(String.valueOf(key), image(key));
+        }
+        // Access order a, c, b as left by a previous run
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(dir.resolve("a.svg"), FileTime.fromMillis(now - 3000));
+        Files.setLastModifiedTime(dir.resolve("c.svg"), FileTime.fromMillis(now - 2000));
+        Files.setLastModifiedTime(dir.resolve("b.svg"), FileTime.fromMillis(now - 1000));
+        Files.write(dir.resolve("d.1.tmp"), image('d'));
+        Files.setLastModifiedTime(dir.resolve("d.1.tmp"), FileTime.fromMillis(now - 3600 * 1000));
+        // Store of another process that shares the directory
+        Files.write(dir.resolve("e.2.tmp"), image('e'));
+
+        RenderCache reloaded = new RenderCache(dir, 1000);
+        assertEquals("Test entries reloaded", 3, reloaded.getEntryCount());
+        assertEquals("Test size reloaded", 300, reloaded.getSizeBytes());
+        assertFalse("Test interrupted store removed", Files.exists(dir.resolve("d.1.tmp")));
+        assertTrue("Test recent store of another process kept", Files.exists(dir.resolve("e.2.tmp")));
+        assertArrayEquals("Test reloaded entry fetched", image('c'), reloaded.fetch("c"));
+        assertEquals("Test counters start with the reloaded cache", 1, reloaded.getHits());
+
+        RenderCache smaller = new RenderCache(dir, 200);
+        assertEquals("Test reload evicts down to the limit", 2, smaller.getEntryCount());
+        assertNull("Test least recently used entry of the previous run evicted", smaller.fetch("a"));
+        assertNotNull("Test recently used entry of the previous run kept", smaller.fetch("b"));
+        assertNotNull("Test fetched entry of the previous run kept", smaller.fetch("c"));
+    }
+
+    @org.junit.Test
+    public void keyTest() {
+        NodeInfo a = new NodeInfo("A\n(?x)", "?x", "Class");
+        NodeInfo b = new NodeInfo("B\n(?y)", "?y", "Class");
+        NodeInfo p = new NodeInfo("p", "p?y", "Property");
+        NodeConnection in = new NodeConnection(a, p, EdgeTypeEnum.ObjectProperty, null);
+        NodeConnection out = new NodeConnection(p, b, EdgeTypeEnum.ObjectProperty, null);
+        GraphListsForViz graph = new GraphListsForViz(new NodeInfo[]{a, b, p}, new NodeConnection[]{in, out});
+
+        assertEquals("Test equal graphs share a key",
+                RenderCache.key(graph, "settings"),
+                RenderCache.key(new GraphListsForViz(new NodeInfo[]{a, b, p}, new NodeConnection[]{in, out}), "settings"));
+        assertNotEquals("Test render settings change the key",
+                RenderCache.key(graph, "settings"), RenderCache.key(graph, "other"));
+        // The layout depends on the order of the nodes and links
+        assertNotEquals("Test node order changes the key", RenderCache.key(graph, "settings"),
+                RenderCache.key(new GraphListsForViz(new NodeInfo[]{b, a, p}, new NodeConnection[]{in, out}), "settings"));
+        assertNotEquals("Test connection order changes the key", RenderCache.key(graph, "settings"),
+                RenderCache.key(new GraphListsForViz(new NodeInfo[]{a, b, p}, new NodeConnection[]{out, in}), "settings"));
+    }
+}
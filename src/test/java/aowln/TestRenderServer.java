@@ -0,0 +1,131 @@
+package aowln;
+
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.controller.RenderServer;
+import com.github.vchavezb.utilities.RenderContext;
+import org.junit.After;
+import org.junit.Before;
+import org.swrlapi.core.SWRLAPIRule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+public class TestRenderServer {
+
+    private AOWLNServiceFacade facade;
+    private RenderServer server;
+
+    private static class Response {
+        final int status;
+        final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        facade = new AOWLNServiceFacade();
+        server = new RenderServer(facade, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private Response request(String method, String path) throws IOException {
+        URL url = new URL("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        try {
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                return new Response(status, in != null ? in.readAllBytes() : new byte[0]);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Path copyResource(String name, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try (InputStream in = TestRenderServer.class.getClassLoader().getResourceAsStream(name)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    @org.junit.Test
+    public void endpointsTest() throws IOException {
+        String id = server.addOntology("simple.ttl", null);
+        server.start();
+        assertTrue("Test server bound to a free port", server.getPort() > 0);
+
+        Response ontologies = request("GET", "/ontologies");
+        assertEquals("Test ontologies listed", 200, ontologies.status);
+        RenderContext context = facade.loadRenderContext("simple.ttl", null);
+        SWRLAPIRule rule = context.getRules().get(0);
+        assertTrue("Test ontology id listed", ontologies.text().contains("\"id\":\"" + id + "\""));
+        assertTrue("Test rule names listed", ontologies.text().contains("\"" + rule.getRuleName() + "\""));
+
+        String ruleParameter = URLEncoder.encode(rule.getRuleName(), StandardCharsets.UTF_8);
+        for (String part : new String[]{"body", "head"}) {
+            Response image = request("GET", "/render?rule=" + ruleParameter + "&part=" + part);
+            assertEquals("Test rule rendered", 200, image.status);
+            assertArrayEquals("Test served image equals the rendered image",
+                    facade.renderRuleImage(context, rule, part), image.body);
+        }
+        assertArrayEquals("Test rule selected by index", request("GET", "/render?rule=" + ruleParameter).body,
+                request("GET", "/render?index=1").body);
+
+        assertEquals("Test unknown rule", 404, request("GET", "/render?rule=missing").status);
+        assertEquals("Test unknown ontology", 404, request("GET", "/render?ontology=missing&index=1").status);
+        assertEquals("Test index out of range", 404, request("GET", "/render?index=1000").status);
+        assertEquals("Test missing rule", 400, request("GET", "/render").status);
+        assertEquals("Test invalid part", 400, request("GET", "/render?index=1&part=tail").status);
+        assertEquals("Test invalid index", 400, request("GET", "/render?index=first").status);
+        assertEquals("Test render must be a GET", 405, request("POST", "/render?index=1").status);
+        assertEquals("Test reload must be a POST", 405, request("GET", "/reload").status);
+    }
+
+    @org.junit.Test
+    public void reloadTest() throws IOException {
+        Path dir = Paths.get("target", "render-server");
+        String stable = server.addOntology(copyResource("simple.ttl", dir.resolve("stable.ttl")).toString(), null);
+        Path removedFile = copyResource("simple.ttl", dir.resolve("removed.ttl"));
+        String removed = server.addOntology(removedFile.toString(), null);
+        server.start();
+
+        Response reload = request("POST", "/reload?ontology=" + stable);
+        assertEquals("Test single ontology reloaded", 200, reload.status);
+        assertEquals("Test reloaded ontology listed", "{\"reloaded\":[\"" + stable + "\"],\"failed\":[]}",
+                reload.text());
+
+        Files.delete(removedFile);
+        reload = request("POST", "/reload");
+        assertEquals("Test failed reload reported", 500, reload.status);
+        assertTrue("Test other ontology still reloaded",
+                reload.text().startsWith("{\"reloaded\":[\"" + stable + "\"],\"failed\":[{\"id\":\"" + removed + "\""));
+        assertEquals("Test failed ontology still served", 200,
+                request("GET", "/render?ontology=" + removed + "&index=1").status);
+    }
+}
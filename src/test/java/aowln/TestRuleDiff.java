@@ -0,0 +1,108 @@
+package aowln;
+
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.controller.OntologyWatcher;
+import com.github.vchavezb.controller.RuleBatchRenderer;
+import com.github.vchavezb.controller.RuleDiff;
+import com.github.vchavezb.utilities.RenderContext;
+import org.swrlapi.core.SWRLAPIRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestRuleDiff {
+
+    private static String onlyName(List<RuleDiff.Entry> entries, boolean newRule) {
+        assertEquals("Test one rule with the status", 1, entries.size());
+        RuleDiff.Entry entry = entries.get(0);
+        return newRule ? entry.getNewRule().getRuleName() : entry.getOldRule().getRuleName();
+    }
+
+    @org.junit.Test
+    public void diffTest() {
+        AOWLNServiceFacade facade = new AOWLNServiceFacade();
+        RenderContext oldContext = facade.loadRenderContext("diff-old.ttl", null);
+        RenderContext newContext = facade.loadRenderContext("diff-new.ttl", null);
+        RuleDiff diff = RuleDiff.compare(facade, oldContext, newContext, true);
+
+        assertEquals("Test renamed rule with the same structure is unchanged", "R2 renamed",
+                onlyName(diff.getEntries(RuleDiff.Status.UNCHANGED), true));
+        assertEquals("Test rule with a new structure is added", "R4",
+                onlyName(diff.getEntries(RuleDiff.Status.ADDED), true));
+        assertEquals("Test rule without match is removed", "R3",
+                onlyName(diff.getEntries(RuleDiff.Status.REMOVED), false));
+        assertEquals("Test rule with the same name and a new structure is modified", "R1",
+                onlyName(diff.getEntries(RuleDiff.Status.MODIFIED), true));
+        assertTrue("Test manifest lists the removed rule",
+                diff.toJson("diff-old.ttl", "diff-new.ttl").contains("\"oldName\": \"R3\""));
+    }
+
+    private static void copyResource(String name, Path target) throws IOException {
+        try (InputStream in = TestRuleDiff.class.getClassLoader().getResourceAsStream(name)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static List<String> images(Path dir) {
+        List<String> names = new ArrayList<>();
+        for (File file : dir.toFile().listFiles((d, name) -> name.endsWith("-body.svg"))) {
+            names.add(file.getName().replace("-body.svg", ""));
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @org.junit.Test
+    public void watcherUpdateTest() throws IOException {
+        Path dir = Paths.get("target", "watcher");
+        Path outDir = dir.resolve("out");
+        Files.createDirectories(outDir);
+        for (File image : outDir.toFile().listFiles()) {
+            image.delete();
+        }
+        Path ontology = dir.resolve("rules.ttl");
+        copyResource("diff-old.ttl", ontology);
+
+        AOWLNServiceFacade facade = new AOWLNServiceFacade();
+        List<SWRLAPIRule> rules = facade.getOntologyRules(ontology.toString(), null);
+        List<String> imageNames = RuleBatchRenderer.imageNames(rules, true);
+        // Only R1 rendered, as in a run with -diff-against
+        assertTrue(new RuleBatchRenderer(facade, 2).render(outDir, imageNames.subList(0, 1), rules.subList(0, 1)).isEmpty());
+        OntologyWatcher watcher = new OntologyWatcher(facade, ontology.toString(), null, outDir, true, 2);
+        watcher.setRendered(imageNames.subList(0, 1), rules.subList(0, 1), Collections.emptyList());
+
+        OntologyWatcher.UpdateResult result = watcher.update();
+        assertEquals("Test rules not rendered yet are added", 2, result.getAdded());
+        assertEquals("Test rendered rule is unchanged", 1, result.getUnchanged());
+        assertEquals("Test all rules rendered after the first update",
+                Arrays.asList("rule_R1", "rule_R2", "rule_R3"), images(outDir));
+        byte[] oldBody = Files.readAllBytes(outDir.resolve("rule_R1-body.svg"));
+
+        // R1 edited, R4 added, R3 removed and R2 renamed
+        copyResource("diff-new.ttl", ontology);
+        result = watcher.update();
+        assertEquals("Test edited rule is changed", 1, result.getChanged());
+        assertEquals("Test new and renamed rules are added", 2, result.getAdded());
+        assertEquals("Test removed and renamed rules are removed", 2, result.getRemoved());
+        assertTrue("Test update without failures", result.getFailures().isEmpty());
+        assertEquals("Test images of the current rules", Arrays.asList("rule_R1", "rule_R2_renamed", "rule_R4"),
+                images(outDir));
+        assertFalse("Test head image of a removed rule deleted", Files.exists(outDir.resolve("rule_R3-head.svg")));
+        assertFalse("Test changed rule rendered again",
+                Arrays.equals(oldBody, Files.readAllBytes(outDir.resolve("rule_R1-body.svg"))));
+
+        result = watcher.update();
+        assertEquals("Test update without changes", 3, result.getUnchanged());
+    }
+}
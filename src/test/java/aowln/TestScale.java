@@ -0,0 +1,131 @@
+package aowln;
+
+import com.github.vchavezb.controller.AOWLNServiceFacade;
+import com.github.vchavezb.controller.RuleBatchRenderer;
+import com.github.vchavezb.controller.RuleRenderFailure;
+import com.github.vchavezb.utilities.RenderContext;
+import org.junit.Assume;
+import org.semanticweb.owlapi.model.IRI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.swrlapi.core.SWRLAPIRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scale tests of the load and render pipeline of the Cli with generated ontologies.
+ * They are skipped unless run with -Daowln.scale=true. The sizes and budgets can be set with
+ *  - aowln.scale.rules    Number of rules of the many rules test (default 10000)
+ *  - aowln.scale.seconds  Time budget per test (default 900)
+ *  - aowln.scale.heapMB   Peak heap budget per test (default 2048)
+ */
+public class TestScale {
+
+    private static final long SEED = 20240501L;
+    private static final Logger logger = LoggerFactory.getLogger(TestScale.class);
+
+    private static Path generate(SyntheticOntologyGenerator generator, String name) throws IOException {
+        return generator.generate(Paths.get("target", "scale", name));
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapMB() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak / (1024 * 1024);
+    }
+
+    /**
+     * Load the ontology and render all rules like the Cli, then check the images, the time and the heap budget
+     */
+    private static void render(Path ontology, int rules, ArrayList<String> imports) throws IOException {
+        Path outDir = Files.createDirectories(ontology.resolveSibling("out"));
+        resetPeakHeap();
+        long start = System.nanoTime();
+        AOWLNServiceFacade facade = new AOWLNServiceFacade();
+        List<SWRLAPIRule> swrlRules = facade.getOntologyRules(ontology.toString(), imports);
+        List<RuleRenderFailure> failures = new RuleBatchRenderer(facade, Runtime.getRuntime().availableProcessors())
+                .render(outDir, RuleBatchRenderer.imageNames(swrlRules, false), swrlRules);
+        long seconds = (System.nanoTime() - start) / 1_000_000_000L;
+        long heapMB = peakHeapMB();
+        logger.info("{}: {} rules in {} s, peak heap {} MB", ontology, rules, seconds, heapMB);
+
+        assertEquals("Test no rule failed: " + failures, 0, failures.size());
+        File[] images = outDir.toFile().listFiles((dir, name) -> name.endsWith(".svg"));
+        assertNotNull("Test output directory exists", images);
+        assertEquals("Test all rules rendered", 2 * rules, images.length);
+        assertTrue("Test time budget of " + seconds + " s",
+                seconds <= Long.getLong("aowln.scale.seconds", 900));
+        assertTrue("Test heap budget of " + heapMB + " MB",
+                heapMB <= Long.getLong("aowln.scale.heapMB", 2048));
+    }
+
+    @org.junit.Test
+    public void generatorTest() throws IOException {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(SEED);
+        generator.setRules(40);
+        generator.setImports(2, 2);
+        Path first = generate(generator, "generator-a");
+        Path second = generate(generator, "generator-b");
+        assertArrayEquals("Test same seed generates the same ontology",
+                Files.readAllBytes(first), Files.readAllBytes(second));
+
+        ArrayList<String> imports = new ArrayList<>();
+        imports.add(first.resolveSibling("imports").toString());
+        RenderContext context = new AOWLNServiceFacade().loadRenderContext(first.toString(), imports);
+        assertEquals("Test all rules loaded", 40, context.getRules().size());
+        assertEquals("Test labels of the imported vocabulary", "Result label",
+                context.getLabelIndex().getLabel(IRI.create(SyntheticOntologyGenerator.NAMESPACE + "Result")));
+    }
+
+    @org.junit.Test
+    public void manyRulesTest() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("aowln.scale"));
+        int rules = Integer.getInteger("aowln.scale.rules", 10000);
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(SEED);
+        generator.setRules(rules);
+        generator.setAtoms(3, 12);
+        generator.setVocabularySize(2000);
+        render(generate(generator, "many-rules"), rules, null);
+    }
+
+    @org.junit.Test
+    public void largeRulesTest() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("aowln.scale"));
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(SEED);
+        generator.setRules(100);
+        generator.setAtoms(100, 300);
+        generator.setBuiltinChain(8);
+        generator.setSelectColumns(40);
+        generator.setRuleMix(0.4, 0.2);
+        generator.setImports(4, 3);
+        generator.setFormat(SyntheticOntologyGenerator.Format.RDF_XML);
+        Path ontology = generate(generator, "large-rules");
+        ArrayList<String> imports = new ArrayList<>();
+        imports.add(ontology.resolveSibling("imports").toString());
+        render(ontology, 100, imports);
+    }
+}